@@ -20,7 +20,7 @@ import javax.lang.model.type.ArrayType;
 import java.io.IOException;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,7 +29,7 @@ public final class ArrayTypeName extends TypeName {
     public final TypeName componentType;
 
     private ArrayTypeName(TypeName componentType) {
-        this(componentType, new ArrayList<>());
+        this(componentType, Collections.emptyList());
     }
 
     private ArrayTypeName(TypeName componentType, List<AttributeSpec> annotations) {
@@ -41,7 +41,7 @@ public final class ArrayTypeName extends TypeName {
      * Returns an array type whose elements are all instances of {@code componentType}.
      */
     public static ArrayTypeName of(TypeName componentType) {
-        return new ArrayTypeName(componentType);
+        return SpecInterner.intern(new ArrayTypeName(componentType));
     }
 
     /**
@@ -21,6 +21,9 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.SimpleAnnotationValueVisitor8;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -32,6 +35,14 @@ import static me.nickac.cspoet.Util.checkNotNull;
  * A generated attribute on a declaration.
  */
 public final class AttributeSpec {
+    private static final ClassValue<AnnotationMembers> ANNOTATION_MEMBERS =
+            new ClassValue<AnnotationMembers>() {
+                @Override
+                protected AnnotationMembers computeValue(Class<?> annotationType) {
+                    return new AnnotationMembers(annotationType);
+                }
+            };
+
     public final TypeName type;
     public final Map<String, List<CodeBlock>> members;
 
@@ -46,29 +57,31 @@ public final class AttributeSpec {
 
     public static AttributeSpec get(Annotation annotation, boolean includeDefaultValues) {
         Builder builder = builder(annotation.annotationType());
+        AnnotationMembers members = ANNOTATION_MEMBERS.get(annotation.annotationType());
         try {
-            Method[] methods = annotation.annotationType().getDeclaredMethods();
-            Arrays.sort(methods, Comparator.comparing(Method::getName));
-            for (Method method: methods) {
-                Object value = method.invoke(annotation);
+            for (int m = 0; m < members.names.length; m++) {
+                String name = members.names[m];
+                Object value = members.invoke(m, annotation);
                 if (!includeDefaultValues) {
-                    if (Objects.deepEquals(value, method.getDefaultValue())) {
+                    if (Objects.deepEquals(value, members.defaultValues[m])) {
                         continue;
                     }
                 }
                 if (value.getClass().isArray()) {
                     for (int i = 0; i < Array.getLength(value); i++) {
-                        builder.addMemberForValue(method.getName(), Array.get(value, i));
+                        builder.addMemberForValue(name, Array.get(value, i));
                     }
                     continue;
                 }
                 if (value instanceof Annotation) {
-                    builder.addMember(method.getName(), "$L", get((Annotation) value));
+                    builder.addMember(name, "$L", get((Annotation) value));
                     continue;
                 }
-                builder.addMemberForValue(method.getName(), value);
+                builder.addMemberForValue(name, value);
             }
-        } catch (Exception e) {
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new RuntimeException("Reflecting " + annotation + " failed!", e);
         }
         return builder.build();
@@ -86,6 +99,13 @@ public final class AttributeSpec {
         return builder.build();
     }
 
+    /**
+     * Returns the attribute for {@code annotation}, memoized in {@code context}.
+     */
+    public static AttributeSpec get(AnnotationMirror annotation, ConversionContext context) {
+        return context.attribute(annotation);
+    }
+
     public static Builder builder(ClassName type) {
         checkNotNull(type, "type == null");
         return new Builder(type);
@@ -100,10 +120,10 @@ public final class AttributeSpec {
         String memberSeparator = inline ? ", " : ",\n";
         if (members.isEmpty()) {
             // @Singleton
-            codeWriter.emit("[$T]", type);
+            codeWriter.emit("[").emitType(type).emit("]");
         } else if (members.size() == 1 && members.containsKey("value")) {
             // @Named("foo")
-            codeWriter.emit("[$T(", type);
+            codeWriter.emit("[").emitType(type).emit("(");
             emitAnnotationValues(codeWriter, whitespace, memberSeparator, members.get("value"));
             codeWriter.emit(")]");
         } else {
@@ -115,12 +135,12 @@ public final class AttributeSpec {
             //       name = "updated_at",
             //       nullable = false
             //   )
-            codeWriter.emit("[$T(" + whitespace, type);
+            codeWriter.emit("[").emitType(type).emit("(" + whitespace);
             codeWriter.indent(2);
             for (Iterator<Map.Entry<String, List<CodeBlock>>> i
                  = members.entrySet().iterator(); i.hasNext(); ) {
                 Map.Entry<String, List<CodeBlock>> entry = i.next();
-                codeWriter.emit("$L = ", entry.getKey());
+                codeWriter.emit(entry.getKey()).emit(" = ");
                 emitAnnotationValues(codeWriter, whitespace, memberSeparator, entry.getValue());
                 if (i.hasNext()) codeWriter.emit(memberSeparator);
             }
@@ -173,14 +193,7 @@ public final class AttributeSpec {
 
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        try {
-            CodeWriter codeWriter = new CodeWriter(out);
-            codeWriter.emit("$L", this);
-            return out.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
-        }
+        return RenderContext.toString(codeWriter -> emit(codeWriter, true));
     }
 
     public static final class Builder {
@@ -231,7 +244,50 @@ public final class AttributeSpec {
         }
 
         public AttributeSpec build() {
-            return new AttributeSpec(this);
+            return SpecInterner.intern(new AttributeSpec(this));
+        }
+    }
+
+    /**
+     * The members of an annotation type sorted by name, with their default values and invokers.
+     */
+    private static final class AnnotationMembers {
+        private static final MethodType INVOKER_TYPE =
+                MethodType.methodType(Object.class, Annotation.class);
+
+        final String[] names;
+        final Object[] defaultValues;
+        /**
+         * Member accessors, or null where the member isn't accessible through a method handle.
+         */
+        private final MethodHandle[] invokers;
+        private final Method[] methods;
+
+        AnnotationMembers(Class<?> annotationType) {
+            Method[] methods = annotationType.getDeclaredMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            this.methods = methods;
+            this.names = new String[methods.length];
+            this.defaultValues = new Object[methods.length];
+            this.invokers = new MethodHandle[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                names[i] = methods[i].getName();
+                defaultValues[i] = methods[i].getDefaultValue();
+                try {
+                    invokers[i] = lookup.unreflect(methods[i]).asType(INVOKER_TYPE);
+                } catch (IllegalAccessException e) {
+                    invokers[i] = null; // Fall back to Method.invoke().
+                }
+            }
+        }
+
+        Object invoke(int member, Annotation annotation) throws Throwable {
+            MethodHandle invoker = invokers[member];
+            if (invoker != null) {
+                return (Object) invoker.invokeExact(annotation);
+            }
+            return methods[member].invoke(annotation);
         }
     }
 
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+
+/**
+ * Binary data embedded in generated code, either as a byte array or as a UTF-8 string literal. The
+ * data is streamed from its source straight into the output each time the code is written, so
+ * embedding a large blob keeps neither the blob nor one argument per byte in memory: <pre>   {@code
+ *
+ *   BinaryLiteral table = BinaryLiteral.of(Paths.get("table.bin"));
+ *   TypeSpec tables = TypeSpec.classBuilder("Tables")
+ *       .addProperty(table.spanProperty("Table", CSharpModifier.PUBLIC))
+ *       .build();
+ * }</pre>
+ *
+ * <p>Files emit their code twice, once to collect imports and once to write it. Binary data contains
+ * no types, so sources are only read by the second pass.
+ */
+public final class BinaryLiteral {
+    private static final TypeName READ_ONLY_SPAN_OF_BYTE =
+            ParameterizedTypeName.get(ClassName.get("System", "ReadOnlySpan"), TypeName.BYTE);
+    private static final int BYTES_PER_ROW = 16;
+    private static final int CHUNK_SIZE = 8192;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ByteBuffer buffer;
+    private final Path file;
+    private final Callable<? extends InputStream> streams;
+
+    private BinaryLiteral(ByteBuffer buffer, Path file, Callable<? extends InputStream> streams) {
+        this.buffer = buffer;
+        this.file = file;
+        this.streams = streams;
+    }
+
+    /**
+     * Returns a literal of the bytes between the position and limit of {@code data}. The buffer
+     * isn't copied, so later changes to its content are visible; its position and limit are not.
+     */
+    public static BinaryLiteral of(ByteBuffer data) {
+        checkNotNull(data, "data == null");
+        return new BinaryLiteral(data.slice().asReadOnlyBuffer(), null, null);
+    }
+
+    /**
+     * Returns a literal of the content of {@code file}, which is memory-mapped each time the literal
+     * is written.
+     */
+    public static BinaryLiteral of(Path file) {
+        checkNotNull(file, "file == null");
+        return new BinaryLiteral(null, file, null);
+    }
+
+    /**
+     * Returns a literal of the bytes read from the streams opened by {@code streams}. A stream is
+     * opened, read to the end and closed each time the literal is written.
+     */
+    public static BinaryLiteral of(Callable<? extends InputStream> streams) {
+        checkNotNull(streams, "streams == null");
+        return new BinaryLiteral(null, null, streams);
+    }
+
+    /**
+     * Returns an array creation expression like {@code new byte[] { 0x2a, 0x00 }}, with {@value
+     * #BYTES_PER_ROW} bytes per line.
+     */
+    public CodeBlock byteArray() {
+        return CodeBlock.of("$L", new Form(this, false));
+    }
+
+    /**
+     * Returns a UTF-8 string literal like {@code "text"u8}. This is more compact than {@link
+     * #byteArray()}, but requires C# 11 and data that is valid UTF-8. Writing code that contains
+     * this literal fails with an {@link IllegalArgumentException} if the data is not.
+     */
+    public CodeBlock utf8() {
+        return CodeBlock.of("$L", new Form(this, true));
+    }
+
+    /**
+     * Returns a static property like {@code static ReadOnlySpan<byte> Name => new byte[] { ... };}.
+     * The compiler stores the array in the assembly image, and the property returns a span over it
+     * without allocating.
+     */
+    public PropertySpec spanProperty(String name, CSharpModifier... modifiers) {
+        PropertySpec.Builder builder = PropertySpec.propertyBuilder(name);
+        for (CSharpModifier modifier: modifiers) {
+            builder.addModifier(modifier);
+        }
+        return builder.addModifier(CSharpModifier.STATIC)
+                .returns(READ_ONLY_SPAN_OF_BYTE)
+                .getter().addStatement("return $L", byteArray()).endGetter()
+                .build();
+    }
+
+    /**
+     * Passes the data to {@code consumer} in order. Sources that are already in memory are passed
+     * in a single chunk.
+     */
+    private void read(ChunkConsumer consumer) throws IOException {
+        if (buffer != null) {
+            consumer.accept(buffer.duplicate(), true);
+        } else if (file != null) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                consumer.accept(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), true);
+            }
+        } else {
+            try (InputStream in = open()) {
+                ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                int count;
+                while ((count = in.read(chunk.array(), chunk.position(), chunk.remaining())) != -1) {
+                    chunk.position(chunk.position() + count);
+                    chunk.flip();
+                    consumer.accept(chunk, false);
+                    chunk.compact();
+                }
+                chunk.flip();
+                consumer.accept(chunk, true);
+            }
+        }
+    }
+
+    private InputStream open() throws IOException {
+        InputStream in;
+        try {
+            in = streams.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        return checkNotNull(in, "streams returned null");
+    }
+
+    private interface ChunkConsumer {
+        /**
+         * Consumes the remaining bytes of {@code chunk}. Bytes left unconsumed are passed again at
+         * the start of the next chunk.
+         */
+        void accept(ByteBuffer chunk, boolean last) throws IOException;
+    }
+
+    /**
+     * A {@code $L} argument that writes a binary literal in one of its forms.
+     */
+    static final class Form {
+        private final BinaryLiteral literal;
+        private final boolean utf8;
+
+        Form(BinaryLiteral literal, boolean utf8) {
+            this.literal = literal;
+            this.utf8 = utf8;
+        }
+
+        void emit(CodeWriter out) throws IOException {
+            if (out.isDiscarding()) {
+                out.emitAndIndent(utf8 ? "\"\"u8" : "new byte[] { }");
+            } else if (utf8) {
+                literal.read(new Utf8Writer(out));
+            } else {
+                literal.read(new ByteArrayWriter(out));
+            }
+        }
+    }
+
+    private static final class ByteArrayWriter implements ChunkConsumer {
+        private final CodeWriter out;
+        private final StringBuilder row = new StringBuilder(BYTES_PER_ROW * 6);
+        private long count;
+        private int statementLine;
+
+        ByteArrayWriter(CodeWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(ByteBuffer chunk, boolean last) throws IOException {
+            while (chunk.hasRemaining()) {
+                int b = chunk.get();
+                if (count == 0) {
+                    // The rows form a block of their own rather than the continuation of a statement.
+                    statementLine = out.statementLine;
+                    out.statementLine = -1;
+                    out.emitAndIndent("new byte[] {\n");
+                    out.indent();
+                } else if (count % BYTES_PER_ROW == 0) {
+                    out.emitAndIndent(row.append(",\n").toString());
+                    row.setLength(0);
+                } else {
+                    row.append(", ");
+                }
+                row.append("0x").append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+                count++;
+            }
+            if (!last) return;
+
+            if (count == 0) {
+                out.emitAndIndent("new byte[] { }");
+                return;
+            }
+            out.emitAndIndent(row.append('\n').toString());
+            out.unindent();
+            out.emitAndIndent("}");
+            out.statementLine = statementLine;
+        }
+    }
+
+    private static final class Utf8Writer implements ChunkConsumer {
+        private final CodeWriter out;
+        private final CharsetDecoder decoder = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        private final StringBuilder literal = new StringBuilder(CHUNK_SIZE + 16);
+        private boolean started;
+
+        Utf8Writer(CodeWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(ByteBuffer chunk, boolean last) throws IOException {
+            if (!started) {
+                literal.append('"');
+                started = true;
+            }
+            CoderResult result;
+            do {
+                result = decoder.decode(chunk, chars, last);
+                checkArgument(!result.isError(), "data is not valid UTF-8");
+                append();
+            } while (result.isOverflow());
+            if (!last) return;
+
+            while (decoder.flush(chars).isOverflow()) {
+                append();
+            }
+            append();
+            out.emitAndIndent(literal.append("\"u8").toString());
+        }
+
+        /**
+         * Escapes the decoded characters into the literal, emitting it when it gets long.
+         */
+        private void append() throws IOException {
+            chars.flip();
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                switch (c) {
+                    case '"':
+                        literal.append("\\\"");
+                        break;
+                    case '\\':
+                        literal.append("\\\\");
+                        break;
+                    case '\n':
+                        literal.append("\\n");
+                        break;
+                    case '\r':
+                        literal.append("\\r");
+                        break;
+                    case '\t':
+                        literal.append("\\t");
+                        break;
+                    case '\0':
+                        literal.append("\\0");
+                        break;
+                    default:
+                        // C# also ends lines at U+2028 and U+2029.
+                        if (Character.isISOControl(c) || c == '\u2028' || c == '\u2029') {
+                            literal.append("\\u")
+                                    .append(HEX_DIGITS[c >> 12])
+                                    .append(HEX_DIGITS[(c >> 8) & 0xf])
+                                    .append(HEX_DIGITS[(c >> 4) & 0xf])
+                                    .append(HEX_DIGITS[c & 0xf]);
+                        } else {
+                            literal.append(c);
+                        }
+                        break;
+                }
+            }
+            chars.clear();
+            if (literal.length() >= CHUNK_SIZE) {
+                out.emitAndIndent(literal.toString());
+                literal.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static me.nickac.cspoet.Util.checkArgument;
+
+/**
+ * A thread safe cache that holds at most {@code maximumSize} entries, evicting the least recently
+ * used entry when full.
+ */
+final class BoundedCache<K, V> {
+    private final Map<K, V> map;
+
+    BoundedCache(int maximumSize) {
+        checkArgument(maximumSize > 0, "maximumSize <= 0: %s", maximumSize);
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    /**
+     * Returns the value cached for {@code key}, computing and caching it if absent. The value is
+     * computed without holding the lock, so two threads may compute it concurrently; the function
+     * must be free of side effects.
+     */
+    V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        V value = get(key);
+        if (value == null) {
+            value = function.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    synchronized int size() {
+        return map.size();
+    }
+
+    synchronized void clear() {
+        map.clear();
+    }
+}
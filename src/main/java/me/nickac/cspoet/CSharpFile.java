@@ -33,30 +33,15 @@ import static me.nickac.cspoet.Util.checkArgument;
  * A CSharp file containing a single top level class.
  */
 public final class CSharpFile {
-    private static final Appendable NULL_APPENDABLE = new Appendable() {
-        @Override
-        public Appendable append(CharSequence charSequence) {
-            return this;
-        }
-
-        @Override
-        public Appendable append(CharSequence charSequence, int start, int end) {
-            return this;
-        }
-
-        @Override
-        public Appendable append(char c) {
-            return this;
-        }
-    };
-
     public final CodeBlock fileComment;
     public final String namespace;
     public final TypeSpec typeSpec;
     public final boolean skipJavaLangImports;
-    private final Set<String> staticImports;
-    private final Set<String> nonStaticImports;
-    private final String indent;
+    final Set<String> staticImports;
+    final Set<String> nonStaticImports;
+    final String indent;
+    final Style style;
+    final int columnLimit;
 
     private CSharpFile(Builder builder) {
         this.fileComment = builder.fileComment.build();
@@ -66,6 +51,8 @@ public final class CSharpFile {
         this.staticImports = Util.immutableSet(builder.staticImports);
         this.nonStaticImports = Util.immutableSet(builder.nonStaticImports);
         this.indent = builder.indent;
+        this.style = builder.style;
+        this.columnLimit = builder.columnLimit;
     }
 
     public static Builder builder(String namespace, TypeSpec typeSpec) {
@@ -75,14 +62,7 @@ public final class CSharpFile {
     }
 
     public void writeTo(Appendable out) throws IOException {
-        // First pass: emit the entire class, just to collect the types we'll need to import.
-        CodeWriter importsCollector = new CodeWriter(NULL_APPENDABLE, indent, staticImports, nonStaticImports);
-        emit(importsCollector);
-        Map<String, ClassName> suggestedImports = importsCollector.suggestedImports();
-
-        // Second pass: write the code, taking advantage of the imports.
-        CodeWriter codeWriter = new CodeWriter(out, indent, suggestedImports, staticImports, nonStaticImports);
-        emit(codeWriter);
+        RenderContext.write(this, out);
     }
 
     /**
@@ -99,7 +79,7 @@ public final class CSharpFile {
             Files.createDirectories(outputDirectory);
         }
 
-        Path outputPath = outputDirectory.resolve(typeSpec.name + ".java");
+        Path outputPath = outputDirectory.resolve(typeSpec.name + ".cs");
         try (Writer writer = new OutputStreamWriter(Files.newOutputStream(outputPath), UTF_8)) {
             writeTo(writer);
         }
@@ -112,6 +92,24 @@ public final class CSharpFile {
         writeTo(directory.toPath());
     }
 
+    /**
+     * Writes this to {@code sink} at its {@link #relativePath() relative path}.
+     */
+    public void writeTo(SourceSink sink) throws IOException {
+        sink.write(this);
+    }
+
+    /**
+     * Returns the path of this file in the standard directory structure, like {@code
+     * Foo/Bar/Baz.cs} for the type {@code Baz} in the namespace {@code Foo.Bar}. Directories are
+     * separated with {@code /}.
+     */
+    String relativePath() {
+        return namespace.isEmpty()
+                ? typeSpec.name + ".cs"
+                : namespace.replace('.', '/') + '/' + typeSpec.name + ".cs";
+    }
+
     /**
      * Writes this to {@code filer}.
      */
@@ -133,7 +131,7 @@ public final class CSharpFile {
         }
     }
 
-    private void emit(CodeWriter codeWriter) throws IOException {
+    void emit(CodeWriter codeWriter) throws IOException {
         codeWriter.pushNamespace(namespace);
 
         if (!fileComment.isEmpty()) {
@@ -143,13 +141,13 @@ public final class CSharpFile {
         int importedTypesCount = 0;
         for (ClassName className: new TreeSet<>(codeWriter.importedTypes().values())) {
             if (skipJavaLangImports && className.packageName().equals("java.lang")) continue;
-            codeWriter.emit("using $L;\n", className.packageName());
+            codeWriter.emit("using ").emit(className.packageName()).emit(";\n");
             importedTypesCount++;
         }
 
         if (!nonStaticImports.isEmpty()) {
             for (String signature: nonStaticImports) {
-                codeWriter.emit("using $L;\n", signature);
+                codeWriter.emit("using ").emit(signature).emit(";\n");
                 importedTypesCount++;
             }
         }
@@ -160,20 +158,24 @@ public final class CSharpFile {
 
         if (!staticImports.isEmpty()) {
             for (String signature: staticImports) {
-                codeWriter.emit("using static $L;\n", signature);
+                codeWriter.emit("using static ").emit(signature).emit(";\n");
             }
             codeWriter.emit("\n");
         }
 
-        if (!namespace.isEmpty()) {
-            codeWriter.emit("namespace $L {\n", namespace);
+        // Compact files use a file-scoped namespace, which needs no closing brace.
+        boolean fileScopedNamespace = !namespace.isEmpty() && style == Style.COMPACT;
+        if (fileScopedNamespace) {
+            codeWriter.emit("namespace ").emit(namespace).emit(";\n");
+        } else if (!namespace.isEmpty()) {
+            codeWriter.emit("namespace ").emit(namespace).emit(" {\n");
             codeWriter.indent();
         }
 
         typeSpec.emit(codeWriter, null, Collections.emptySet());
 
 
-        if (!namespace.isEmpty()) {
+        if (!namespace.isEmpty() && !fileScopedNamespace) {
             codeWriter.unindent();
             codeWriter.emit("}");
         }
@@ -195,13 +197,7 @@ public final class CSharpFile {
 
     @Override
     public String toString() {
-        try {
-            StringBuilder result = new StringBuilder();
-            writeTo(result);
-            return result.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
-        }
+        return RenderContext.toString(this);
     }
 
     public JavaFileObject toJavaFileObject() {
@@ -234,9 +230,32 @@ public final class CSharpFile {
         builder.fileComment.add(fileComment);
         builder.skipJavaLangImports = skipJavaLangImports;
         builder.indent = indent;
+        builder.style = style;
+        builder.columnLimit = columnLimit;
         return builder;
     }
 
+    /**
+     * How a file's code is laid out. Styles only affect whitespace, comments and the form of
+     * namespaces and string literals; the specs of a file are emitted the same way in every style.
+     */
+    public enum Style {
+        /**
+         * Code for humans to read: indented, wrapped before the column limit, with documentation
+         * and comments, in a block-scoped namespace.
+         */
+        READABLE,
+
+        /**
+         * Code for compilers only. It has no indentation, line wrapping, documentation, comments or
+         * blank lines, and it uses a file-scoped namespace like {@code namespace Foo;}, which needs
+         * C# 10. Multi-line strings are emitted as regular literals, since raw literals rely on
+         * indentation. Blank lines are removed from {@code $L} arguments too, so these must not
+         * contain multi-line verbatim or raw literals of their own.
+         */
+        COMPACT
+    }
+
     public static final class Builder {
         private final String namespace;
         private final TypeSpec typeSpec;
@@ -245,6 +264,8 @@ public final class CSharpFile {
         private final Set<String> nonStaticImports = new LinkedHashSet<>();
         private boolean skipJavaLangImports;
         private String indent = "\t";
+        private Style style = Style.READABLE;
+        private int columnLimit = CodeWriter.DEFAULT_COLUMN_LIMIT;
 
         private Builder(String namespace, TypeSpec typeSpec) {
             this.namespace = namespace;
@@ -299,6 +320,25 @@ public final class CSharpFile {
             return this;
         }
 
+        /**
+         * Sets the column that lines prefer to wrap before at {@code $W} and {@code $Z}, or 0 to
+         * never wrap them. Code without these wrap points is written straight through, whatever
+         * the limit. The default is 100.
+         */
+        public Builder columnLimit(int columnLimit) {
+            checkArgument(columnLimit >= 0, "columnLimit < 0: %s", columnLimit);
+            this.columnLimit = columnLimit;
+            return this;
+        }
+
+        /**
+         * Sets how the file is laid out. The default is {@link Style#READABLE}.
+         */
+        public Builder style(Style style) {
+            this.style = Util.checkNotNull(style, "style == null");
+            return this;
+        }
+
         public CSharpFile build() {
             return new CSharpFile(this);
         }
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+
+/**
+ * Mirrors Java data classes as C# types. Public instance fields become fields, and JavaBeans
+ * getters (with their setters, if any) become auto-properties: <pre>   {@code
+ *
+ *   ClassMirror mirror = ClassMirror.builder().parallel(true).build();
+ *   List<CSharpFile> files = mirror.mirrorFiles(modelClasses);
+ * }</pre>
+ *
+ * <p>Member types are converted with a {@link TypeMapping}, {@link TypeMapping#defaults()} unless
+ * another is configured. Enums become C# enums with the same constants, and interfaces become
+ * interfaces declaring only properties. Each class is mirrored as a top-level type named after its
+ * simple name, and references between classes mirrored together name those types. Classes that
+ * share a simple name and namespace can't be mirrored together.
+ *
+ * <p>The reflective metadata of each class is computed once and shared by all mirrors. Mirrors are
+ * immutable and thread safe.
+ */
+public final class ClassMirror {
+    private static final ClassValue<ClassMetadata> METADATA = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private final TypeMapping typeMapping;
+    private final Function<Class<?>, String> namespaces;
+    private final boolean parallel;
+
+    private ClassMirror(Builder builder) {
+        this.typeMapping = builder.typeMapping;
+        this.namespaces = builder.namespaces;
+        this.parallel = builder.parallel;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public TypeSpec mirror(Class<?> type) {
+        checkNotNull(type, "type == null");
+        return mirror(type, mirroredNames(Collections.singleton(type)));
+    }
+
+    private TypeSpec mirror(Class<?> type, Map<Class<?>, TypeName> mirrored) {
+        ClassMetadata metadata = METADATA.get(type);
+
+        if (metadata.enumConstants != null) {
+            TypeSpec.Builder builder = TypeSpec.enumBuilder(type.getSimpleName())
+                    .addModifiers(CSharpModifier.PUBLIC);
+            for (String constant: metadata.enumConstants) {
+                builder.addEnumConstant(constant);
+            }
+            return builder.build();
+        }
+
+        TypeSpec.Builder builder = type.isInterface()
+                ? TypeSpec.interfaceBuilder(type.getSimpleName())
+                : TypeSpec.classBuilder(type.getSimpleName());
+        builder.addModifiers(CSharpModifier.PUBLIC);
+        if (!type.isInterface() && Modifier.isAbstract(type.getModifiers())) {
+            builder.addModifiers(CSharpModifier.ABSTRACT);
+        }
+        for (TypeVariable<?> typeVariable: metadata.typeParameters) {
+            List<TypeName> bounds = new ArrayList<>();
+            for (Type bound: typeVariable.getBounds()) {
+                if (bound != Object.class) {
+                    bounds.add(typeMapping.get(bound, mirrored));
+                }
+            }
+            builder.addTypeVariable(TypeVariableName.get(typeVariable.getName(),
+                    bounds.toArray(new TypeName[0])));
+        }
+        if (metadata.superclass != null) {
+            TypeName superclass = typeMapping.get(metadata.superclass, mirrored);
+            if (!superclass.equals(TypeName.OBJECT)) {
+                builder.superclass(superclass);
+            }
+        }
+
+        for (Field field: metadata.fields) {
+            FieldSpec.Builder fieldBuilder = FieldSpec.builder(
+                    typeMapping.get(field.getGenericType(), mirrored), field.getName(), CSharpModifier.PUBLIC);
+            if (Modifier.isFinal(field.getModifiers())) {
+                fieldBuilder.addModifiers(CSharpModifier.READONLY);
+            }
+            builder.addField(fieldBuilder.build());
+        }
+
+        for (BeanProperty property: metadata.properties) {
+            PropertySpec.Builder propertyBuilder = PropertySpec.propertyBuilder(property.name)
+                    .addModifier(CSharpModifier.PUBLIC)
+                    .returns(typeMapping.get(property.type, mirrored))
+                    .getter().empty();
+            if (property.writable) {
+                propertyBuilder.setter().empty();
+            }
+            builder.addProperty(propertyBuilder.build());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Mirrors each of {@code types}, returning the results in the same order.
+     */
+    public List<TypeSpec> mirrorAll(Collection<? extends Class<?>> types) {
+        Map<Class<?>, TypeName> mirrored = mirroredNames(types);
+        return stream(types).map(type -> mirror(type, mirrored)).collect(Collectors.toList());
+    }
+
+    /**
+     * Mirrors each of {@code types} into a file in its namespace, returning the results in the same
+     * order.
+     */
+    public List<CSharpFile> mirrorFiles(Collection<? extends Class<?>> types) {
+        Map<Class<?>, TypeName> mirrored = mirroredNames(types);
+        return stream(types)
+                .map(type -> CSharpFile.builder(namespaces.apply(type), mirror(type, mirrored))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private Stream<? extends Class<?>> stream(Collection<? extends Class<?>> types) {
+        return parallel ? types.parallelStream() : types.stream();
+    }
+
+    /**
+     * Returns the names of the top-level types that {@code types} are mirrored as, so that
+     * references between mirrored classes name them. These are looked up before the type mapping,
+     * but mappings configured explicitly win. Classes that would be mirrored as the same type are
+     * rejected.
+     */
+    private Map<Class<?>, TypeName> mirroredNames(Collection<? extends Class<?>> types) {
+        checkNotNull(types, "types == null");
+        Map<Class<?>, TypeName> result = new HashMap<>();
+        Map<ClassName, Class<?>> mirroredAs = new HashMap<>();
+        for (Class<?> type: types) {
+            checkNotNull(type, "type == null");
+            ClassName name = ClassName.get(namespaces.apply(type), type.getSimpleName());
+            Class<?> other = mirroredAs.put(name, type);
+            checkArgument(other == null || other == type, "%s and %s are both mirrored as %s",
+                    other != null ? other.getName() : null, type.getName(), name);
+            if (!typeMapping.contains(type)) {
+                result.put(type, name);
+            }
+        }
+        return result;
+    }
+
+    private static String packageName(Class<?> type) {
+        while (type.getEnclosingClass() != null) {
+            type = type.getEnclosingClass();
+        }
+        int lastDot = type.getName().lastIndexOf('.');
+        return lastDot != -1 ? type.getName().substring(0, lastDot) : "";
+    }
+
+    /**
+     * The members of a class that are mirrored.
+     */
+    private static final class ClassMetadata {
+        final List<Field> fields = new ArrayList<>();
+        final List<BeanProperty> properties = new ArrayList<>();
+        final TypeVariable<?>[] typeParameters;
+        /**
+         * The generic superclass, or null if there is none or it is {@code Object}.
+         */
+        final Type superclass;
+        /**
+         * The names of the enum constants, or null if the class isn't an enum.
+         */
+        final List<String> enumConstants;
+
+        ClassMetadata(Class<?> type) {
+            this.typeParameters = type.getTypeParameters();
+            this.superclass = type.getSuperclass() != null && type.getSuperclass() != Object.class
+                    ? type.getGenericSuperclass()
+                    : null;
+
+            if (type.isEnum()) {
+                List<String> constants = new ArrayList<>();
+                for (Object constant: type.getEnumConstants()) {
+                    constants.add(((Enum<?>) constant).name());
+                }
+                this.enumConstants = Collections.unmodifiableList(constants);
+                return;
+            }
+            this.enumConstants = null;
+
+            for (Field field: type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers)
+                        || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                fields.add(field);
+            }
+
+            Map<String, Method> getters = new TreeMap<>();
+            Map<String, Method> setters = new HashMap<>();
+            for (Method method: type.getDeclaredMethods()) {
+                int modifiers = method.getModifiers();
+                if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers)
+                        || method.isBridge() || method.isSynthetic()) {
+                    continue;
+                }
+                String name = method.getName();
+                int parameterCount = method.getParameterTypes().length;
+                if (parameterCount == 0 && method.getReturnType() != void.class) {
+                    if (isAccessor(name, "get")) {
+                        getters.put(name.substring(3), method);
+                    } else if (isAccessor(name, "is") && method.getReturnType() == boolean.class) {
+                        getters.put(name.substring(2), method);
+                    }
+                } else if (parameterCount == 1 && isAccessor(name, "set")) {
+                    setters.put(name.substring(3), method);
+                }
+            }
+            for (Map.Entry<String, Method> entry: getters.entrySet()) {
+                Method getter = entry.getValue();
+                Method setter = setters.get(entry.getKey());
+                boolean writable = setter != null
+                        && setter.getParameterTypes()[0] == getter.getReturnType();
+                properties.add(new BeanProperty(entry.getKey(), getter.getGenericReturnType(), writable));
+            }
+        }
+
+        private static boolean isAccessor(String name, String prefix) {
+            return name.length() > prefix.length()
+                    && name.startsWith(prefix)
+                    && Character.isUpperCase(name.charAt(prefix.length()));
+        }
+    }
+
+    private static final class BeanProperty {
+        final String name;
+        final Type type;
+        final boolean writable;
+
+        BeanProperty(String name, Type type, boolean writable) {
+            this.name = name;
+            this.type = type;
+            this.writable = writable;
+        }
+    }
+
+    public static final class Builder {
+        private TypeMapping typeMapping = TypeMapping.defaults();
+        private Function<Class<?>, String> namespaces = ClassMirror::packageName;
+        private boolean parallel;
+
+        private Builder() {
+        }
+
+        public Builder typeMapping(TypeMapping typeMapping) {
+            this.typeMapping = checkNotNull(typeMapping, "typeMapping == null");
+            return this;
+        }
+
+        /**
+         * Sets the function that returns the namespace of each mirrored class's file. By default
+         * this is the class's Java package.
+         */
+        public Builder namespaces(Function<Class<?>, String> namespaces) {
+            this.namespaces = checkNotNull(namespaces, "namespaces == null");
+            return this;
+        }
+
+        /**
+         * Mirrors collections of classes in parallel. Results are returned in encounter order either
+         * way.
+         */
+        public Builder parallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        public ClassMirror build() {
+            return new ClassMirror(this);
+        }
+    }
+}
@@ -31,6 +31,13 @@ import static me.nickac.cspoet.Util.checkArgument;
  * A fully-qualified class name for top-level and member classes.
  */
 public final class ClassName extends TypeName implements Comparable<ClassName> {
+    private static final ClassValue<ClassName> CLASS_NAMES = new ClassValue<ClassName>() {
+        @Override
+        protected ClassName computeValue(Class<?> clazz) {
+            return create(clazz);
+        }
+    };
+
     public static final ClassName OBJECT = ClassName.get(Object.class);
 
     /**
@@ -73,7 +80,10 @@ public final class ClassName extends TypeName implements Comparable<ClassName> {
         checkArgument(!clazz.isPrimitive(), "primitive types cannot be represented as a ClassName");
         checkArgument(!void.class.equals(clazz), "'void' type cannot be represented as a ClassName");
         checkArgument(!clazz.isArray(), "array types cannot be represented as a ClassName");
+        return CLASS_NAMES.get(clazz);
+    }
 
+    private static ClassName create(Class<?> clazz) {
         String anonymousSuffix = "";
         while (clazz.isAnonymousClass()) {
             int lastDollar = clazz.getName().lastIndexOf('$');
@@ -117,7 +127,7 @@ public final class ClassName extends TypeName implements Comparable<ClassName> {
             className = new ClassName(packageName, className, simpleName);
         }
 
-        return className;
+        return SpecInterner.intern(className);
     }
 
     /**
@@ -129,7 +139,14 @@ public final class ClassName extends TypeName implements Comparable<ClassName> {
         for (String name: simpleNames) {
             className = className.nestedClass(name);
         }
-        return className;
+        return SpecInterner.intern(className);
+    }
+
+    /**
+     * Returns the class name for {@code element}, memoized in {@code context}.
+     */
+    public static ClassName get(TypeElement element, ConversionContext context) {
+        return context.className(element);
     }
 
     /**
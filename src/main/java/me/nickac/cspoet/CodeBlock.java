@@ -17,11 +17,14 @@ package me.nickac.cspoet;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.type.TypeMirror;
-import java.io.IOException;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collector;
@@ -41,20 +44,25 @@ import static me.nickac.cspoet.Util.checkArgument;
  * <ul>
  * <li>{@code $L} emits a <em>literal</em> value with no escaping. Arguments for literals may be
  * strings, primitives, {@linkplain TypeSpec type declarations}, {@linkplain AttributeSpec
- * annotations} and even other code blocks.
+ * annotations} and even other code blocks. Expensive arguments can be deferred until they are
+ * emitted with {@link #lazy}. Numbers are emitted by {@link String#valueOf(Object)}, without
+ * suffixes; use {@link Builder#addLiteral(long)} and its overloads for C# literals with the
+ * {@code L}, {@code f} and {@code m} suffixes.
  * <li>{@code $N} emits a <em>name</em>, using name collision avoidance where necessary. Arguments
  * for names may be strings (actually any {@linkplain CharSequence character sequence}),
  * {@linkplain ParameterSpec parameters}, {@linkplain FieldSpec fields}, {@linkplain
  * MethodSpec methods}, and {@linkplain TypeSpec types}.
  * <li>{@code $S} escapes the value as a <em>string</em>, wraps it with double quotes, and emits
- * that. For example, {@code 6" sandwich} is emitted {@code "6\" sandwich"}.
+ * that. For example, {@code 6" sandwich} is emitted {@code "6\" sandwich"}. Multi-line values
+ * are emitted as raw string literals, and values with many backslashes as verbatim literals.
  * <li>{@code $T} emits a <em>type</em> reference. Types will be imported if possible. Arguments
  * for types may be {@linkplain Class classes}, {@linkplain javax.lang.model.type.TypeMirror
  * ,*       type mirrors}, and {@linkplain javax.lang.model.element.Element elements}.
  * <li>{@code $$} emits a dollar sign.
  * <li>{@code $W} emits a space or a newline, depending on its position on the line. This prefers
- * to wrap lines before 100 columns.
- * <li>{@code $Z} acts as a zero-width space. This prefers to wrap lines before 100 columns.
+ * to wrap lines before the {@linkplain CSharpFile.Builder#columnLimit column limit}, 100 columns
+ * by default.
+ * <li>{@code $Z} acts as a zero-width space. This prefers to wrap lines before the column limit.
  * <li>{@code $>} increases the indentation level.
  * <li>{@code $<} decreases the indentation level.
  * <li>{@code $[} begins a statement. For multiline statements, every line after the first line
@@ -67,6 +75,28 @@ public final class CodeBlock {
             Pattern.compile("\\$(?<argumentName>[\\w_]+):(?<typeChar>[\\w]).*");
     private static final Pattern LOWERCASE = Pattern.compile("[a-z]+[\\w_]*");
 
+    /**
+     * Format part standing in for a code block appended with {@link Builder#add(CodeBlock)}. Its
+     * argument is the appended block, which is emitted as if its parts had been copied in place.
+     */
+    static final String SPLICE = "$B";
+
+    /**
+     * Placeholder parts like {@code "$T"}, indexed by their character, so that every block shares
+     * the same strings rather than concatenating its own.
+     */
+    private static final String[] PLACEHOLDERS = new String[128];
+
+    static {
+        for (char c: "$><[]WZBLNSTt".toCharArray()) {
+            PLACEHOLDERS[c] = ("$" + c).intern();
+        }
+    }
+
+    /** Shared by every block built without any parts, like the default javadoc of each spec. */
+    private static final CodeBlock EMPTY = new CodeBlock(
+            Collections.emptyList(), Collections.emptyList(), 0);
+
     /**
      * A heterogeneous list containing string literals and value placeholders.
      */
@@ -80,10 +110,83 @@ public final class CodeBlock {
         this.args = Util.immutableList(builder.args);
     }
 
+    private CodeBlock(List<String> formatParts, List<Object> args, int statementCount) {
+        this.statementCount = statementCount;
+        this.formatParts = Util.immutableList(formatParts);
+        this.args = Util.immutableList(args);
+    }
+
+    /**
+     * Returns the shared part for the placeholder {@code $c}.
+     */
+    static String placeholder(char c) {
+        String placeholder = c < PLACEHOLDERS.length ? PLACEHOLDERS[c] : null;
+        return placeholder != null ? placeholder : "$" + c;
+    }
+
     public static CodeBlock of(String format, Object... args) {
         return new Builder().add(format, args).build();
     }
 
+    /**
+     * Returns a code block whose content is produced by {@code supplier} the first time it is
+     * emitted. The supplier may return anything accepted as a {@code $L} argument, such as a
+     * {@link TypeSpec} or another {@link CodeBlock}. Its result is memoized, so the supplier runs at
+     * most once even though files are emitted twice (once to collect imports and once to write), and
+     * never if the block isn't emitted or compared at all. Comparing specs structurally, like {@link
+     * SpecDiff} and {@link RenderCache} do, runs it too, as lazy literals are compared by value.
+     */
+    public static CodeBlock lazy(Supplier<?> supplier) {
+        Util.checkNotNull(supplier, "supplier == null");
+        return new Builder().add("$L", new LazyLiteral(supplier)).build();
+    }
+
+    /**
+     * Returns a template for {@code format}, which uses the named argument syntax of {@link
+     * Builder#addNamed}. The format is parsed and validated once; each {@link Template#bind bound}
+     * block shares the template's format parts and only stores its arguments. <pre>   {@code
+     *
+     *   CodeBlock.Template guard = CodeBlock.template(
+     *       "if ($name:N == null) throw new $exception:T(nameof($name:N));\n");
+     *   CodeBlock block = guard.bind("value", ClassName.get("System", "ArgumentNullException"));
+     * }</pre>
+     */
+    public static Template template(String format) {
+        return new Template(format);
+    }
+
+    /**
+     * Returns an array initializer like {@code { 1, 2, 3 }} for {@code values}. Short arrays are
+     * emitted on one line; longer ones are emitted one row per line, with as many values per row as
+     * fit before the column limit. The values are stored and formatted without boxing, so this is
+     * suited to large lookup tables: <pre>   {@code
+     *
+     *   CodeBlock.of("static readonly int[] Table = $L;\n", CodeBlock.arrayInitializer(table));
+     * }</pre>
+     */
+    public static CodeBlock arrayInitializer(int... values) {
+        return arrayInitializer(new ArrayInitializer(values.clone(), null, null));
+    }
+
+    /**
+     * Returns an array initializer for {@code values}, each of which has the {@code L} suffix. See
+     * {@link #arrayInitializer(int...)}.
+     */
+    public static CodeBlock arrayInitializer(long... values) {
+        return arrayInitializer(new ArrayInitializer(null, values.clone(), null));
+    }
+
+    /**
+     * Returns an array initializer for {@code values}. See {@link #arrayInitializer(int...)}.
+     */
+    public static CodeBlock arrayInitializer(double... values) {
+        return arrayInitializer(new ArrayInitializer(null, null, values.clone()));
+    }
+
+    private static CodeBlock arrayInitializer(ArrayInitializer initializer) {
+        return new Builder().add("$L", initializer).build();
+    }
+
     /**
      * Joins {@code codeBlocks} into a single {@link CodeBlock}, each separated by {@code separator}.
      * For example, joining {@code String s}, {@code Object o} and {@code int i} using {@code ", "}
@@ -99,8 +202,9 @@ public final class CodeBlock {
      * {@code int i} using {@code ", "} would produce {@code String s, Object o, int i}.
      */
     public static Collector<CodeBlock, ?, CodeBlock> joining(String separator) {
+        CodeBlock delimiter = CodeBlock.of(separator);
         return Collector.of(
-                () -> new CodeBlockJoiner(separator, builder()),
+                () -> new CodeBlockJoiner(delimiter),
                 CodeBlockJoiner::add,
                 CodeBlockJoiner::merge,
                 CodeBlockJoiner::join);
@@ -113,15 +217,16 @@ public final class CodeBlock {
      */
     public static Collector<CodeBlock, ?, CodeBlock> joining(
             String separator, String prefix, String suffix) {
-        Builder builder = builder().add("$N", prefix);
+        CodeBlock delimiter = CodeBlock.of(separator);
         return Collector.of(
-                () -> new CodeBlockJoiner(separator, builder),
+                () -> new CodeBlockJoiner(delimiter),
                 CodeBlockJoiner::add,
                 CodeBlockJoiner::merge,
-                joiner -> {
-                    builder.add(CodeBlock.of("$N", suffix));
-                    return joiner.join();
-                });
+                joiner -> builder()
+                        .add("$N", prefix)
+                        .add(joiner.join())
+                        .add("$N", suffix)
+                        .build());
     }
 
     public static Builder builder() {
@@ -151,13 +256,35 @@ public final class CodeBlock {
 
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        try {
-            new CodeWriter(out).emit(this);
-            return out.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
+        return RenderContext.toString(codeWriter -> codeWriter.emit(this));
+    }
+
+    /**
+     * Returns this block without {@code prefix} at the start of its first line, or this block if
+     * its first line doesn't start with {@code prefix}. Only literal text is matched, looking into
+     * code blocks that this block begins with.
+     */
+    CodeBlock withoutPrefix(String prefix) {
+        for (int i = 0; i < formatParts.size(); i++) {
+            String part = formatParts.get(i);
+            if (part.equals("$[")) continue;
+
+            if (part.startsWith(prefix)) {
+                List<String> parts = new ArrayList<>(formatParts);
+                parts.set(i, part.substring(prefix.length()));
+                return new CodeBlock(parts, args, statementCount);
+            }
+            if ((part.equals("$L") || part.equals(SPLICE)) && args.get(0) instanceof CodeBlock) {
+                CodeBlock first = (CodeBlock) args.get(0);
+                CodeBlock stripped = first.withoutPrefix(prefix);
+                if (stripped == first) return this;
+                List<Object> newArgs = new ArrayList<>(args);
+                newArgs.set(0, stripped);
+                return new CodeBlock(formatParts, newArgs, statementCount);
+            }
+            return this;
         }
+        return this;
     }
 
     public Builder toBuilder() {
@@ -191,48 +318,18 @@ public final class CodeBlock {
          * value {@code java.lang.Integer.class} in the argument map.
          */
         public Builder addNamed(String format, Map<String, ?> arguments) {
-            int p = 0;
-
             for (String argument: arguments.keySet()) {
                 checkArgument(LOWERCASE.matcher(argument).matches(),
                         "argument '%s' must start with a lowercase character", argument);
             }
-
-            while (p < format.length()) {
-                int nextP = format.indexOf("$", p);
-                if (nextP == -1) {
-                    formatParts.add(format.substring(p, format.length()));
-                    break;
-                }
-
-                if (p != nextP) {
-                    formatParts.add(format.substring(p, nextP));
-                    p = nextP;
-                }
-
-                Matcher matcher = null;
-                int colon = format.indexOf(':', p);
-                if (colon != -1) {
-                    int endIndex = Math.min(colon + 2, format.length());
-                    matcher = NAMED_ARGUMENT.matcher(format.substring(p, endIndex));
-                }
-                if (matcher != null && matcher.lookingAt()) {
-                    String argumentName = matcher.group("argumentName");
-                    checkArgument(arguments.containsKey(argumentName), "Missing named argument for $%s",
-                            argumentName);
-                    char formatChar = matcher.group("typeChar").charAt(0);
-                    addArgument(format, formatChar, arguments.get(argumentName));
-                    formatParts.add("$" + formatChar);
-                    p += matcher.regionEnd();
-                } else {
-                    checkArgument(p < format.length() - 1, "dangling $ at end");
-                    checkArgument(isNoArgPlaceholder(format.charAt(p + 1)),
-                            "unknown format $%s at %s in '%s'", format.charAt(p + 1), p + 1, format);
-                    formatParts.add(format.substring(p, p + 2));
-                    p += 2;
-                }
+            Template template = new Template(format);
+            formatParts.addAll(template.formatParts);
+            for (int i = 0; i < template.argumentSlots.length; i++) {
+                String argumentName = template.slotNames.get(template.argumentSlots[i]);
+                checkArgument(arguments.containsKey(argumentName), "Missing named argument for $%s",
+                        argumentName);
+                args.add(argument(format, template.argumentTypes[i], arguments.get(argumentName)));
             }
-
             return this;
         }
 
@@ -278,7 +375,7 @@ public final class CodeBlock {
                 if (isNoArgPlaceholder(c)) {
                     checkArgument(
                             indexStart == indexEnd, "$$, $>, $<, $[, $], $W, and $Z may not have an index");
-                    formatParts.add("$" + c);
+                    formatParts.add(placeholder(c));
                     continue;
                 }
 
@@ -303,7 +400,7 @@ public final class CodeBlock {
 
                 addArgument(format, c, args[index]);
 
-                formatParts.add("$" + c);
+                formatParts.add(placeholder(c));
             }
 
             if (hasRelative) {
@@ -323,32 +420,32 @@ public final class CodeBlock {
             return this;
         }
 
-        private boolean isNoArgPlaceholder(char c) {
+        private static boolean isNoArgPlaceholder(char c) {
             return c == '$' || c == '>' || c == '<' || c == '[' || c == ']' || c == 'W' || c == 'Z';
         }
 
         private void addArgument(String format, char c, Object arg) {
+            this.args.add(argument(format, c, arg));
+        }
+
+        private static Object argument(String format, char c, Object arg) {
             switch (c) {
                 case 'N':
-                    this.args.add(argToName(arg));
-                    break;
+                    return argToName(arg);
                 case 'L':
-                    this.args.add(argToLiteral(arg));
-                    break;
+                    return argToLiteral(arg);
                 case 'S':
-                    this.args.add(argToString(arg));
-                    break;
+                    return argToString(arg);
                 case 't':
                 case 'T':
-                    this.args.add(argToType(arg));
-                    break;
+                    return argToType(arg);
                 default:
                     throw new IllegalArgumentException(
                             String.format("invalid format string: '%s'", format));
             }
         }
 
-        private String argToName(Object o) {
+        private static String argToName(Object o) {
             if (o instanceof CharSequence) return o.toString();
             if (o instanceof ParameterSpec) return ((ParameterSpec) o).name;
             if (o instanceof FieldSpec) return ((FieldSpec) o).name;
@@ -357,15 +454,15 @@ public final class CodeBlock {
             throw new IllegalArgumentException("expected name but was " + o);
         }
 
-        private Object argToLiteral(Object o) {
+        private static Object argToLiteral(Object o) {
             return o;
         }
 
-        private String argToString(Object o) {
+        private static String argToString(Object o) {
             return o != null ? String.valueOf(o) : null;
         }
 
-        private TypeName argToType(Object o) {
+        private static TypeName argToType(Object o) {
             if (o instanceof TypeName) return (TypeName) o;
             if (o instanceof TypeMirror) return TypeName.get((TypeMirror) o);
             if (o instanceof Element) return TypeName.get(((Element) o).asType());
@@ -424,9 +521,77 @@ public final class CodeBlock {
             return returnVal;
         }
 
+        /**
+         * Appends {@code codeBlock}. The block is referenced rather than copied, so this takes
+         * constant time however large {@code codeBlock} is.
+         */
         public Builder add(CodeBlock codeBlock) {
-            formatParts.addAll(codeBlock.formatParts);
-            args.addAll(codeBlock.args);
+            if (codeBlock.isEmpty()) return this;
+            formatParts.add(SPLICE);
+            args.add(codeBlock);
+            return this;
+        }
+
+        /**
+         * Appends {@code value} as an {@code int} literal.
+         */
+        public Builder addLiteral(int value) {
+            formatParts.add(Integer.toString(value));
+            return this;
+        }
+
+        /**
+         * Appends {@code value} as a {@code long} literal, like {@code 5L}.
+         */
+        public Builder addLiteral(long value) {
+            formatParts.add(Util.appendLiteral(new StringBuilder(21), value).toString());
+            return this;
+        }
+
+        /**
+         * Appends {@code value} as a {@code float} literal, like {@code 0.5f}. NaN and the
+         * infinities are appended as {@code float.NaN}, {@code float.PositiveInfinity} and {@code
+         * float.NegativeInfinity}.
+         */
+        public Builder addLiteral(float value) {
+            formatParts.add(Util.appendLiteral(new StringBuilder(16), value).toString());
+            return this;
+        }
+
+        /**
+         * Appends {@code value} as a {@code double} literal, like {@code 0.5}. NaN and the
+         * infinities are appended as {@code double.NaN}, {@code double.PositiveInfinity} and {@code
+         * double.NegativeInfinity}.
+         */
+        public Builder addLiteral(double value) {
+            formatParts.add(Util.appendLiteral(new StringBuilder(24), value).toString());
+            return this;
+        }
+
+        /**
+         * Appends {@code value} as a {@code decimal} literal, like {@code 1.25m}.
+         */
+        public Builder addLiteral(BigDecimal value) {
+            Util.checkNotNull(value, "value == null");
+            formatParts.add(Util.appendLiteral(new StringBuilder(), value).toString());
+            return this;
+        }
+
+        /**
+         * Appends the 32 bits of {@code value} as a {@code uint} literal, like {@code 4294967295U}
+         * for {@code -1}.
+         */
+        public Builder addUnsignedLiteral(int value) {
+            formatParts.add(Integer.toUnsignedString(value) + "U");
+            return this;
+        }
+
+        /**
+         * Appends the 64 bits of {@code value} as a {@code ulong} literal, like {@code
+         * 18446744073709551615UL} for {@code -1L}.
+         */
+        public Builder addUnsignedLiteral(long value) {
+            formatParts.add(Long.toUnsignedString(value) + "UL");
             return this;
         }
 
@@ -441,18 +606,212 @@ public final class CodeBlock {
         }
 
         public CodeBlock build() {
-            return new CodeBlock(this);
+            if (formatParts.isEmpty() && args.isEmpty() && statementCount == 0) return EMPTY;
+            return SpecInterner.intern(new CodeBlock(this));
+        }
+    }
+
+    /**
+     * A format with named slots, compiled once and bound to arguments any number of times. Create
+     * instances with {@link CodeBlock#template}.
+     */
+    public static final class Template {
+        private final String format;
+        final List<String> formatParts;
+        /**
+         * The distinct slot names, in order of first appearance.
+         */
+        final List<String> slotNames;
+        /**
+         * For each argument placeholder in {@link #formatParts}, the index of its slot name.
+         */
+        final int[] argumentSlots;
+        /**
+         * For each argument placeholder in {@link #formatParts}, its type character.
+         */
+        final char[] argumentTypes;
+
+        private Template(String format) {
+            List<String> formatParts = new ArrayList<>();
+            List<String> slotNames = new ArrayList<>();
+            List<Integer> argumentSlots = new ArrayList<>();
+            StringBuilder argumentTypes = new StringBuilder();
+            int p = 0;
+
+            while (p < format.length()) {
+                int nextP = format.indexOf("$", p);
+                if (nextP == -1) {
+                    formatParts.add(format.substring(p, format.length()));
+                    break;
+                }
+
+                if (p != nextP) {
+                    formatParts.add(format.substring(p, nextP));
+                    p = nextP;
+                }
+
+                Matcher matcher = null;
+                int colon = format.indexOf(':', p);
+                if (colon != -1) {
+                    int endIndex = Math.min(colon + 2, format.length());
+                    matcher = NAMED_ARGUMENT.matcher(format.substring(p, endIndex));
+                }
+                if (matcher != null && matcher.lookingAt()) {
+                    String argumentName = matcher.group("argumentName");
+                    char formatChar = matcher.group("typeChar").charAt(0);
+                    checkArgument("NLSTt".indexOf(formatChar) != -1,
+                            "invalid format string: '%s'", format);
+                    int slot = slotNames.indexOf(argumentName);
+                    if (slot == -1) {
+                        slot = slotNames.size();
+                        slotNames.add(argumentName);
+                    }
+                    argumentSlots.add(slot);
+                    argumentTypes.append(formatChar);
+                    formatParts.add(placeholder(formatChar));
+                    p += matcher.regionEnd();
+                } else {
+                    checkArgument(p < format.length() - 1, "dangling $ at end");
+                    checkArgument(Builder.isNoArgPlaceholder(format.charAt(p + 1)),
+                            "unknown format $%s at %s in '%s'", format.charAt(p + 1), p + 1, format);
+                    formatParts.add(placeholder(format.charAt(p + 1)));
+                    p += 2;
+                }
+            }
+
+            this.format = format;
+            this.formatParts = Util.immutableList(formatParts);
+            this.slotNames = Util.immutableList(slotNames);
+            this.argumentSlots = new int[argumentSlots.size()];
+            for (int i = 0; i < this.argumentSlots.length; i++) {
+                this.argumentSlots[i] = argumentSlots.get(i);
+            }
+            this.argumentTypes = argumentTypes.toString().toCharArray();
+        }
+
+        /**
+         * Returns the names of this template's slots, in order of first appearance.
+         */
+        public List<String> slots() {
+            return slotNames;
+        }
+
+        public CodeBlock bind(Map<String, ?> arguments) {
+            Object[] values = new Object[slotNames.size()];
+            for (int i = 0; i < values.length; i++) {
+                String argumentName = slotNames.get(i);
+                checkArgument(arguments.containsKey(argumentName), "Missing named argument for $%s",
+                        argumentName);
+                values[i] = arguments.get(argumentName);
+            }
+            return bindValues(values);
+        }
+
+        /**
+         * Binds {@code arguments} to this template's {@link #slots() slots}, in order.
+         */
+        public CodeBlock bind(Object... arguments) {
+            checkArgument(arguments.length == slotNames.size(),
+                    "expected %s arguments for %s, received %s",
+                    slotNames.size(), slotNames, arguments.length);
+            return bindValues(arguments);
+        }
+
+        private CodeBlock bindValues(Object[] values) {
+            if (formatParts.isEmpty()) return EMPTY;
+            List<Object> args = new ArrayList<>(argumentSlots.length);
+            for (int i = 0; i < argumentSlots.length; i++) {
+                args.add(Builder.argument(format, argumentTypes[i], values[argumentSlots[i]]));
+            }
+            // The parts are already immutable, so the block shares them rather than copying them.
+            return SpecInterner.intern(new CodeBlock(formatParts, args, 0));
+        }
+
+        @Override
+        public String toString() {
+            return format;
+        }
+    }
+
+    /**
+     * A {@code $L} argument computed on first use.
+     */
+    static final class LazyLiteral {
+        private static final Object UNSET = new Object();
+
+        private Supplier<?> supplier;
+        private volatile Object value = UNSET;
+
+        LazyLiteral(Supplier<?> supplier) {
+            this.supplier = supplier;
+        }
+
+        Object get() {
+            Object result = value;
+            if (result == UNSET) {
+                synchronized (this) {
+                    result = value;
+                    if (result == UNSET) {
+                        result = supplier.get();
+                        value = result;
+                        supplier = null; // Release whatever the supplier captured.
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A {@code $L} argument created by {@link #arrayInitializer}. Exactly one of the arrays is
+     * non-null.
+     */
+    static final class ArrayInitializer {
+        private final int[] ints;
+        private final long[] longs;
+        private final double[] doubles;
+        final int length;
+
+        private ArrayInitializer(int[] ints, long[] longs, double[] doubles) {
+            this.ints = ints;
+            this.longs = longs;
+            this.doubles = doubles;
+            this.length = ints != null ? ints.length : longs != null ? longs.length : doubles.length;
+        }
+
+        void appendValue(StringBuilder out, int index) {
+            if (ints != null) {
+                out.append(ints[index]);
+            } else if (longs != null) {
+                Util.appendLiteral(out, longs[index]);
+            } else {
+                Util.appendLiteral(out, doubles[index]);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ArrayInitializer)) return false;
+            ArrayInitializer that = (ArrayInitializer) o;
+            return Arrays.equals(ints, that.ints)
+                    && Arrays.equals(longs, that.longs)
+                    && Arrays.equals(doubles, that.doubles);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(ints) + Arrays.hashCode(longs)) + Arrays.hashCode(doubles);
         }
     }
 
     private static final class CodeBlockJoiner {
-        private final String delimiter;
-        private final Builder builder;
+        private final CodeBlock delimiter;
+        private Builder builder = builder();
         private boolean first = true;
 
-        CodeBlockJoiner(String delimiter, Builder builder) {
+        CodeBlockJoiner(CodeBlock delimiter) {
             this.delimiter = delimiter;
-            this.builder = builder;
         }
 
         CodeBlockJoiner add(CodeBlock codeBlock) {
@@ -465,11 +824,19 @@ public final class CodeBlock {
             return this;
         }
 
+        /**
+         * Appends everything joined by {@code other}, which must follow this joiner in encounter
+         * order. {@code other} is consumed: its parts are appended as a single block without being
+         * copied.
+         */
         CodeBlockJoiner merge(CodeBlockJoiner other) {
-            CodeBlock otherBlock = other.builder.build();
-            if (!otherBlock.isEmpty()) {
-                add(otherBlock);
-            }
+            if (other.first) return this;
+            if (first) return other;
+            Builder otherBuilder = other.builder;
+            other.builder = null;
+            builder.add(delimiter);
+            builder.add(new CodeBlock(
+                    otherBuilder.formatParts, otherBuilder.args, otherBuilder.statementCount));
             return this;
         }
 
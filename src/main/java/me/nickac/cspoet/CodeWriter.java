@@ -32,16 +32,51 @@ final class CodeWriter {
      * Sentinel value that indicates that no user-provided package has been set.
      */
     private static final String NO_PACKAGE = "";
+    static final int DEFAULT_COLUMN_LIMIT = 100;
+
+    /**
+     * Discards everything written to it. Used for passes that only collect imports.
+     */
+    static final Appendable NULL_APPENDABLE = new Appendable() {
+        @Override
+        public Appendable append(CharSequence charSequence) {
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence charSequence, int start, int end) {
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            return this;
+        }
+    };
 
-    private final String indent;
     private final LineWrapper out;
     private final List<TypeSpec> typeSpecStack = new ArrayList<>();
-    private final Set<String> staticImportClassNames;
-    private final Set<String> staticImports;
-    private final Set<String> nonStaticImports;
-    private final Map<String, ClassName> importedTypes;
+    private final Set<String> staticImportClassNames = new LinkedHashSet<>();
     private final Map<String, ClassName> importableTypes = new LinkedHashMap<>();
     private final Set<String> referencedNames = new LinkedHashSet<>();
+    private String indent;
+    private Set<String> staticImports;
+    private Set<String> nonStaticImports;
+    private Map<String, ClassName> importedTypes;
+    /**
+     * The code blocks being emitted, innermost last. Nested blocks are walked with these explicit
+     * stacks rather than by recursion, so deeply nested blocks can't overflow the call stack.
+     */
+    private CodeBlock[] blockStack = new CodeBlock[8];
+    private int[] partIndexes = new int[8];
+    private int[] argIndexes = new int[8];
+    private boolean[] splicedBlocks = new boolean[8];
+    private int blockDepth;
+    /**
+     * Scratch space for formatting literals, reused so that large literals don't allocate a builder
+     * each time they're emitted.
+     */
+    private final StringBuilder literalBuffer = new StringBuilder();
     /**
      * When emitting a statement, this is the line of the statement currently being written. The first
      * line of a statement is indented normally and subsequent wrapped lines are double-indented. This
@@ -53,6 +88,10 @@ final class CodeWriter {
     private boolean comment = false;
     private String namespace = NO_PACKAGE;
     private boolean trailingNewline;
+    /**
+     * True to write code without indentation, wrapping, comments or blank lines.
+     */
+    private boolean compact;
 
     CodeWriter(Appendable out) {
         this(out, "\t", Collections.emptySet(), Collections.emptySet());
@@ -64,11 +103,38 @@ final class CodeWriter {
 
     CodeWriter(Appendable out, String indent, Map<String, ClassName> importedTypes,
                Set<String> staticImports, Set<String> nonStaticImports) {
-        this.out = new LineWrapper(out, indent, 100);
+        this.out = new LineWrapper(out, indent, DEFAULT_COLUMN_LIMIT);
+        init(indent, importedTypes, staticImports, nonStaticImports);
+    }
+
+    /**
+     * Returns this writer to the state of a newly constructed one writing to {@code out}. Internal
+     * collections are cleared rather than reallocated so that pooled writers keep their capacity.
+     */
+    CodeWriter reset(Appendable out, String indent, Map<String, ClassName> importedTypes,
+                     Set<String> staticImports, Set<String> nonStaticImports) {
+        this.out.reset(out, indent, DEFAULT_COLUMN_LIMIT);
+        this.typeSpecStack.clear();
+        this.staticImportClassNames.clear();
+        this.importableTypes.clear();
+        this.referencedNames.clear();
+        this.statementLine = -1;
+        this.indentLevel = 0;
+        this.javadoc = false;
+        this.comment = false;
+        this.namespace = NO_PACKAGE;
+        this.trailingNewline = false;
+        this.blockDepth = 0;
+        this.compact = false;
+        init(indent, importedTypes, staticImports, nonStaticImports);
+        return this;
+    }
+
+    private void init(String indent, Map<String, ClassName> importedTypes,
+                      Set<String> staticImports, Set<String> nonStaticImports) {
         this.indent = Util.checkNotNull(indent, "indent == null");
         this.importedTypes = Util.checkNotNull(importedTypes, "importedTypes == null");
         this.staticImports = Util.checkNotNull(staticImports, "staticImports == null");
-        this.staticImportClassNames = new LinkedHashSet<>();
         this.nonStaticImports = Util.checkNotNull(nonStaticImports, "staticImports == null");
         for (String signature: staticImports) {
             staticImportClassNames.add(signature.substring(0, signature.lastIndexOf('.')));
@@ -85,6 +151,27 @@ final class CodeWriter {
         return part;
     }
 
+    /**
+     * Switches this writer to compact output, as for {@link CSharpFile.Style#COMPACT}. Call this
+     * before emitting anything; {@link #reset} switches back.
+     */
+    CodeWriter compact() {
+        this.compact = true;
+        this.out.columnLimit(0);
+        return this;
+    }
+
+    /**
+     * Sets the column that {@code $W} and {@code $Z} prefer to wrap before, or 0 to never wrap.
+     * Call this before emitting anything; {@link #reset} restores the default of {@value
+     * #DEFAULT_COLUMN_LIMIT}.
+     */
+    CodeWriter columnLimit(int columnLimit) {
+        checkArgument(columnLimit >= 0, "columnLimit < 0: %s", columnLimit);
+        this.out.columnLimit(columnLimit);
+        return this;
+    }
+
     public Map<String, ClassName> importedTypes() {
         return importedTypes;
     }
@@ -130,6 +217,8 @@ final class CodeWriter {
     }
 
     public void emitComment(CodeBlock codeBlock) throws IOException {
+        if (compact) return;
+
         trailingNewline = true; // Force the '//' prefix for the comment.
         comment = true;
         try {
@@ -141,7 +230,7 @@ final class CodeWriter {
     }
 
     public void emitJavadoc(CodeBlock javadocCodeBlock) throws IOException {
-        if (javadocCodeBlock.isEmpty()) return;
+        if (javadocCodeBlock.isEmpty() || compact) return;
 
         emit("/**\n");
         javadoc = true;
@@ -190,10 +279,11 @@ final class CodeWriter {
         for (TypeVariableName typeVariable: typeVariables) {
             if (!firstTypeVariable) emit(", ");
             emitAnnotations(typeVariable.annotations, true);
-            emit("$L", typeVariable.name);
+            emitAndIndent(typeVariable.name);
             boolean firstBound = true;
             for (TypeName bound: typeVariable.bounds) {
-                emit(firstBound ? " : $T" : ", $T", bound);
+                emitAndIndent(firstBound ? " : " : ", ");
+                emitType(bound);
                 firstBound = false;
             }
             firstTypeVariable = false;
@@ -210,107 +300,197 @@ final class CodeWriter {
     }
 
     public CodeWriter emit(CodeBlock codeBlock) throws IOException {
-        int a = 0;
+        int base = blockDepth;
         ClassName deferredTypeName = null; // used by "import static" logic
-        ListIterator<String> partIterator = codeBlock.formatParts.listIterator();
-        while (partIterator.hasNext()) {
-            String part = partIterator.next();
-            switch (part) {
-                case "$L":
-                    emitLiteral(codeBlock.args.get(a++));
-                    break;
-
-                case "$N":
-                    emitAndIndent((String) codeBlock.args.get(a++));
-                    break;
-
-                case "$S":
-                    String string = (String) codeBlock.args.get(a++);
-                    // Emit null as a literal null: no quotes.
-                    emitAndIndent(string != null
-                            ? Util.stringLiteralWithDoubleQuotes(string, indent)
-                            : "null");
-                    break;
-
-                case "$t":
-                case "$T":
-                    TypeName typeName = (TypeName) codeBlock.args.get(a++);
-                    // defer "typeName.emit(this)" if next format part will be handled by the default case
-                    if (typeName instanceof ClassName && partIterator.hasNext()) {
-                        if (!codeBlock.formatParts.get(partIterator.nextIndex()).startsWith("$")) {
-                            ClassName candidate = (ClassName) typeName;
-                            if (staticImportClassNames.contains(candidate.canonicalName)) {
-                                checkState(deferredTypeName == null, "pending type for static import?!");
-                                deferredTypeName = candidate;
-                                break;
+        pushBlock(codeBlock, false);
+        try {
+            while (blockDepth > base) {
+                int top = blockDepth - 1;
+                CodeBlock block = blockStack[top];
+                int p = partIndexes[top];
+                if (p == block.formatParts.size()) {
+                    blockStack[--blockDepth] = null;
+                    continue;
+                }
+                partIndexes[top] = p + 1;
+                String part = block.formatParts.get(p);
+                switch (part) {
+                    case CodeBlock.SPLICE:
+                        pushBlock((CodeBlock) block.args.get(argIndexes[top]++), true);
+                        break;
+
+                    case "$L":
+                        Object literal = block.args.get(argIndexes[top]++);
+                        if (literal instanceof CodeBlock.LazyLiteral) {
+                            literal = ((CodeBlock.LazyLiteral) literal).get();
+                        }
+                        if (literal instanceof CodeBlock) {
+                            pushBlock((CodeBlock) literal, false);
+                        } else {
+                            emitLiteral(literal);
+                        }
+                        break;
+
+                    case "$N":
+                        emitAndIndent((String) block.args.get(argIndexes[top]++));
+                        break;
+
+                    case "$S":
+                        String string = (String) block.args.get(argIndexes[top]++);
+                        // Emit null as a literal null: no quotes.
+                        emitAndIndent(string != null
+                                ? Util.stringLiteralWithDoubleQuotes(string, !compact)
+                                : "null");
+                        break;
+
+                    case "$t":
+                    case "$T":
+                        TypeName typeName = (TypeName) block.args.get(argIndexes[top]++);
+                        // defer "typeName.emit(this)" if next format part will be handled by the default case
+                        if (typeName instanceof ClassName) {
+                            String nextPart = peekPart(base);
+                            if (nextPart != null && !nextPart.startsWith("$")) {
+                                ClassName candidate = (ClassName) typeName;
+                                if (staticImportClassNames.contains(candidate.canonicalName)) {
+                                    checkState(deferredTypeName == null, "pending type for static import?!");
+                                    deferredTypeName = candidate;
+                                    break;
+                                }
                             }
                         }
-                    }
-                    if (part.equals("$t") && typeName instanceof ClassName) {
-                        importableType(((ClassName) typeName));
-                        ((ClassName) typeName).emit(this, true);
-                    } else
-                        typeName.emit(this);
-                    break;
-
-                case "$$":
-                    emitAndIndent("$");
-                    break;
-
-                case "$>":
-                    indent();
-                    break;
-
-                case "$<":
-                    unindent();
-                    break;
-
-                case "$[":
-                    checkState(statementLine == -1, "statement enter $[ followed by statement enter $[");
-                    statementLine = 0;
-                    break;
-
-                case "$]":
-                    checkState(statementLine != -1, "statement exit $] has no matching statement enter $[");
-                    if (statementLine > 0) {
-                        unindent(2); // End a multi-line statement. Decrease the indentation level.
-                    }
-                    statementLine = -1;
-                    break;
-
-                case "$W":
-                    out.wrappingSpace(indentLevel + 2);
-                    break;
-
-                case "$Z":
-                    out.zeroWidthSpace(indentLevel + 2);
-                    break;
-
-                default:
-                    // handle deferred type
-                    if (deferredTypeName != null) {
-                        if (part.startsWith(".")) {
-                            if (emitStaticImportMember(deferredTypeName.canonicalName, part)) {
-                                // okay, static import hit and all was emitted, so clean-up and jump to next part
-                                deferredTypeName = null;
-                                break;
+                        if (part.equals("$t")) {
+                            emitSimpleType(typeName);
+                        } else {
+                            emitType(typeName);
+                        }
+                        break;
+
+                    case "$$":
+                        emitAndIndent("$");
+                        break;
+
+                    case "$>":
+                        indent();
+                        break;
+
+                    case "$<":
+                        unindent();
+                        break;
+
+                    case "$[":
+                        checkState(statementLine == -1, "statement enter $[ followed by statement enter $[");
+                        statementLine = 0;
+                        break;
+
+                    case "$]":
+                        checkState(statementLine != -1, "statement exit $] has no matching statement enter $[");
+                        if (statementLine > 0) {
+                            unindent(2); // End a multi-line statement. Decrease the indentation level.
+                        }
+                        statementLine = -1;
+                        break;
+
+                    case "$W":
+                        emitWrappingSpace();
+                        break;
+
+                    case "$Z":
+                        emitZeroWidthSpace();
+                        break;
+
+                    default:
+                        // handle deferred type
+                        if (deferredTypeName != null) {
+                            if (part.startsWith(".")) {
+                                if (emitStaticImportMember(deferredTypeName.canonicalName, part)) {
+                                    // okay, static import hit and all was emitted, so clean-up and jump to next part
+                                    deferredTypeName = null;
+                                    break;
+                                }
                             }
+                            deferredTypeName.emit(this);
+                            deferredTypeName = null;
                         }
-                        deferredTypeName.emit(this);
-                        deferredTypeName = null;
-                    }
-                    emitAndIndent(part);
-                    break;
+                        emitAndIndent(part);
+                        break;
+                }
+            }
+        } finally {
+            while (blockDepth > base) {
+                blockStack[--blockDepth] = null;
             }
         }
         return this;
     }
 
+    private void pushBlock(CodeBlock codeBlock, boolean spliced) {
+        if (blockDepth == blockStack.length) {
+            int capacity = blockDepth * 2;
+            blockStack = Arrays.copyOf(blockStack, capacity);
+            partIndexes = Arrays.copyOf(partIndexes, capacity);
+            argIndexes = Arrays.copyOf(argIndexes, capacity);
+            splicedBlocks = Arrays.copyOf(splicedBlocks, capacity);
+        }
+        blockStack[blockDepth] = codeBlock;
+        partIndexes[blockDepth] = 0;
+        argIndexes[blockDepth] = 0;
+        splicedBlocks[blockDepth] = spliced;
+        blockDepth++;
+    }
+
+    /**
+     * Returns the format part that follows the one being emitted, looking into and out of spliced
+     * blocks as if their parts had been copied in place. Returns null if the part being emitted is
+     * the last of a block that was emitted on its own or as a {@code $L} argument.
+     */
+    private String peekPart(int base) {
+        for (int i = blockDepth - 1; i >= base; i--) {
+            CodeBlock block = blockStack[i];
+            int p = partIndexes[i];
+            if (p < block.formatParts.size()) {
+                String part = block.formatParts.get(p);
+                int a = argIndexes[i];
+                while (part.equals(CodeBlock.SPLICE)) {
+                    block = (CodeBlock) block.args.get(a);
+                    a = 0;
+                    part = block.formatParts.get(0);
+                }
+                return part;
+            }
+            if (!splicedBlocks[i]) break;
+        }
+        return null;
+    }
+
     public CodeWriter emitWrappingSpace() throws IOException {
         out.wrappingSpace(indentLevel + 2);
         return this;
     }
 
+    public CodeWriter emitZeroWidthSpace() throws IOException {
+        out.zeroWidthSpace(indentLevel + 2);
+        return this;
+    }
+
+    /**
+     * Emits {@code typeName} as {@code $T} does, importing it if possible.
+     */
+    public CodeWriter emitType(TypeName typeName) throws IOException {
+        return typeName.emit(this);
+    }
+
+    /**
+     * Emits {@code typeName} as {@code $t} does: class names are imported and emitted by their
+     * simple name.
+     */
+    public CodeWriter emitSimpleType(TypeName typeName) throws IOException {
+        if (typeName instanceof ClassName) {
+            importableType((ClassName) typeName);
+            return ((ClassName) typeName).emit(this, true);
+        }
+        return typeName.emit(this);
+    }
+
     private boolean emitStaticImportMember(String canonical, String part) throws IOException {
         String partWithoutLeadingDot = part.substring(1);
         if (partWithoutLeadingDot.isEmpty()) return false;
@@ -325,21 +505,86 @@ final class CodeWriter {
         return false;
     }
 
-    private void emitLiteral(Object o) throws IOException {
+    /**
+     * Emits {@code o} as {@code $L} does.
+     */
+    void emitLiteral(Object o) throws IOException {
         if (o instanceof TypeSpec) {
             TypeSpec typeSpec = (TypeSpec) o;
             typeSpec.emit(this, null, Collections.emptySet());
         } else if (o instanceof AttributeSpec) {
             AttributeSpec attributeSpec = (AttributeSpec) o;
             attributeSpec.emit(this, true);
-        } else if (o instanceof CodeBlock) {
-            CodeBlock codeBlock = (CodeBlock) o;
-            emit(codeBlock);
+        } else if (o instanceof CodeBlock.ArrayInitializer) {
+            emitArrayInitializer((CodeBlock.ArrayInitializer) o);
+        } else if (o instanceof BinaryLiteral.Form) {
+            ((BinaryLiteral.Form) o).emit(this);
         } else {
             emitAndIndent(String.valueOf(o));
         }
     }
 
+    /**
+     * Returns true if this writer only collects imports, discarding the code it's given.
+     */
+    boolean isDiscarding() {
+        return out.isDiscarding();
+    }
+
+    private StringBuilder formatLiteral() {
+        literalBuffer.setLength(0);
+        return literalBuffer;
+    }
+
+    /**
+     * Emits {@code array} on the current line if it fits. Otherwise each value is appended to a row
+     * until the next one would cross the column limit, and the rows are emitted on their own lines.
+     */
+    private void emitArrayInitializer(CodeBlock.ArrayInitializer array) throws IOException {
+        if (array.length == 0 || isDiscarding()) {
+            emitAndIndent("{ }"); // Values contain no types, so there's nothing to collect.
+            return;
+        }
+
+        StringBuilder row = formatLiteral().append("{ ");
+        int column = trailingNewline ? indentLevel * indent.length() : out.column();
+        int columnLimit = out.columnLimit() != 0 ? out.columnLimit() : Integer.MAX_VALUE;
+        int available = columnLimit - column - 2; // Room for " }".
+        int i = 0;
+        for (; i < array.length && row.length() <= available; i++) {
+            if (i > 0) row.append(", ");
+            array.appendValue(row, i);
+        }
+        if (i == array.length && row.length() <= available) {
+            emitAndIndent(row.append(" }").toString());
+            return;
+        }
+
+        // The rows form a block of their own rather than the continuation of a statement.
+        int statement = statementLine;
+        statementLine = -1;
+        emitAndIndent("{\n");
+        indent();
+        int rowWidth = columnLimit - indentLevel * indent.length();
+        row.setLength(0);
+        for (i = 0; i < array.length; i++) {
+            int rowEnd = row.length();
+            if (rowEnd > 0) row.append(' ');
+            array.appendValue(row, i);
+            if (i < array.length - 1) row.append(',');
+            if (rowEnd > 0 && row.length() > rowWidth) {
+                emitAndIndent(row.substring(0, rowEnd));
+                emitAndIndent("\n");
+                row.delete(0, rowEnd + 1);
+            }
+        }
+        emitAndIndent(row.toString());
+        emitAndIndent("\n");
+        unindent();
+        emitAndIndent("}");
+        statementLine = statement;
+    }
+
     /**
      * Returns the best name to identify {@code className} with in the current context. This uses the
      * available imports and the current scope to find the shortest name available. It does not honor
@@ -437,44 +682,56 @@ final class CodeWriter {
      * unnecessary trailing whitespace.
      */
     CodeWriter emitAndIndent(String s) throws IOException {
-        boolean first = true;
-        for (String line: s.split("\n", -1)) {
-            // Emit a newline character. Make sure blank lines in Javadoc & comments look good.
-            if (!first) {
-                if ((javadoc || comment) && trailingNewline) {
-                    emitIndentation();
-                    out.append(javadoc ? " *" : "//");
-                }
-                out.append("\n");
-                trailingNewline = true;
-                if (statementLine != -1) {
-                    if (statementLine == 0) {
-                        indent(2); // Begin multiple-line statement. Increase the indentation level.
-                    }
-                    statementLine++;
-                }
+        int start = 0;
+        for (int newline; (newline = s.indexOf('\n', start)) != -1; start = newline + 1) {
+            emitLine(s, start, newline);
+            emitNewline();
+        }
+        emitLine(s, start, s.length());
+        return this;
+    }
+
+    /**
+     * Emits the characters of {@code s} between {@code start} and {@code end}, which contain no
+     * newlines.
+     */
+    private void emitLine(String s, int start, int end) throws IOException {
+        if (start == end) return; // Don't indent empty lines.
+
+        // Emit indentation and comment prefix if necessary.
+        if (trailingNewline) {
+            emitIndentation();
+            if (javadoc) {
+                out.append(" * ");
+            } else if (comment) {
+                out.append("// ");
             }
+        }
 
-            first = false;
-            if (line.isEmpty()) continue; // Don't indent empty lines.
+        out.append(start == 0 && end == s.length() ? s : s.substring(start, end));
+        trailingNewline = false;
+    }
 
-            // Emit indentation and comment prefix if necessary.
-            if (trailingNewline) {
-                emitIndentation();
-                if (javadoc) {
-                    out.append(" * ");
-                } else if (comment) {
-                    out.append("// ");
-                }
-            }
+    private void emitNewline() throws IOException {
+        if (compact && trailingNewline) return; // Compact output has no blank lines.
 
-            out.append(line);
-            trailingNewline = false;
+        // Make sure blank lines in Javadoc & comments look good.
+        if ((javadoc || comment) && trailingNewline) {
+            emitIndentation();
+            out.append(javadoc ? " *" : "//");
+        }
+        out.append("\n");
+        trailingNewline = true;
+        if (statementLine != -1) {
+            if (statementLine == 0) {
+                indent(2); // Begin multiple-line statement. Increase the indentation level.
+            }
+            statementLine++;
         }
-        return this;
     }
 
     private void emitIndentation() throws IOException {
+        if (compact) return;
         for (int j = 0; j < indentLevel; j++) {
             out.append(indent);
         }
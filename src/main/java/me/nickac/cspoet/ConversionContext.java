@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Memoizes conversions of elements and type mirrors within one annotation processing round. Pass
+ * a context to {@link TypeName#get(TypeMirror, ConversionContext)}, {@link
+ * ClassName#get(TypeElement, ConversionContext)}, {@link AttributeSpec#get(AnnotationMirror,
+ * ConversionContext)} or {@link MethodSpec#overriding(ExecutableElement, ConversionContext)} to
+ * convert each mirror or element at most once: <pre>   {@code
+ *
+ *   private final ConversionContext conversions = ConversionContext.create();
+ *
+ *   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+ *     conversions.forRound(roundEnv);
+ *     ...
+ *   }
+ * }</pre>
+ *
+ * <p>Conversions are keyed by identity, and a context forgets them when it is scoped to a new
+ * round, since elements and mirrors from earlier rounds shouldn't be reused. Contexts are not
+ * thread safe.
+ */
+public final class ConversionContext {
+    private final Map<TypeMirror, TypeName> typeNames = new IdentityHashMap<>();
+    private final Map<TypeElement, ClassName> classNames = new IdentityHashMap<>();
+    private final Map<AnnotationMirror, AttributeSpec> attributes = new IdentityHashMap<>();
+    private final Map<ExecutableElement, MethodSpec> overrides = new IdentityHashMap<>();
+    private RoundEnvironment round;
+
+    private ConversionContext() {
+    }
+
+    public static ConversionContext create() {
+        return new ConversionContext();
+    }
+
+    /**
+     * Scopes this context to {@code round}. If it was scoped to a different round, everything it
+     * memoized is cleared.
+     */
+    public ConversionContext forRound(RoundEnvironment round) {
+        Util.checkNotNull(round, "round == null");
+        if (this.round != round) {
+            clear();
+            this.round = round;
+        }
+        return this;
+    }
+
+    /**
+     * Forgets all memoized conversions.
+     */
+    public void clear() {
+        typeNames.clear();
+        classNames.clear();
+        attributes.clear();
+        overrides.clear();
+        round = null;
+    }
+
+    /**
+     * Returns the number of memoized conversions.
+     */
+    public int size() {
+        return typeNames.size() + classNames.size() + attributes.size() + overrides.size();
+    }
+
+    TypeName typeName(TypeMirror mirror) {
+        TypeName result = typeNames.get(mirror);
+        if (result == null) {
+            result = TypeName.get(mirror);
+            typeNames.put(mirror, result);
+        }
+        return result;
+    }
+
+    ClassName className(TypeElement element) {
+        ClassName result = classNames.get(element);
+        if (result == null) {
+            result = ClassName.get(element);
+            classNames.put(element, result);
+        }
+        return result;
+    }
+
+    AttributeSpec attribute(AnnotationMirror annotation) {
+        AttributeSpec result = attributes.get(annotation);
+        if (result == null) {
+            result = AttributeSpec.get(annotation);
+            attributes.put(annotation, result);
+        }
+        return result;
+    }
+
+    MethodSpec override(ExecutableElement method) {
+        MethodSpec result = overrides.get(method);
+        if (result == null) {
+            result = MethodSpec.overriding(method).build();
+            overrides.put(method, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+
+/**
+ * The members of a C# enum, like {@code Foo = 17}, each with an optional value and attributes.
+ *
+ * <p>Unlike {@linkplain TypeSpec#enumConstants enum constants}, members aren't type specs: they're
+ * kept in parallel arrays, and arrays for values, expressions and attributes are only allocated
+ * once a member has one. An enum of 50,000 members with plain numeric values holds little more than
+ * its names and a {@code long} for each.
+ */
+public final class EnumMembers {
+    static final EnumMembers EMPTY = new EnumMembers(new String[0], null, null, null, null);
+
+    private final String[] names;
+    /** The numeric values of members, or null if none has one. */
+    private final long[] values;
+    /** The members with a numeric value, or null if none has one. */
+    private final BitSet hasValue;
+    /** The values of members given as code, like {@code Read | Write}, or null if none is. */
+    private final CodeBlock[] expressions;
+    /** The attributes of each member, or null if none has any. */
+    private final AttributeSpec[][] attributes;
+
+    private EnumMembers(String[] names, long[] values, BitSet hasValue, CodeBlock[] expressions,
+                        AttributeSpec[][] attributes) {
+        this.names = names;
+        this.values = values;
+        this.hasValue = hasValue;
+        this.expressions = expressions;
+        this.attributes = attributes;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the value of the member at {@code index}, or null if it's implicitly one more than the
+     * previous member's.
+     */
+    public CodeBlock value(int index) {
+        CodeBlock expression = expression(index);
+        if (expression != null) return expression;
+        // Enum values take the enum's underlying type, so they're written without a suffix.
+        return hasNumericValue(index) ? CodeBlock.of("$L", Long.toString(values[index])) : null;
+    }
+
+    public List<AttributeSpec> attributes(int index) {
+        checkIndex(index);
+        if (attributes == null || attributes[index] == null) return Collections.emptyList();
+        return Collections.unmodifiableList(Arrays.asList(attributes[index]));
+    }
+
+    boolean hasNumericValue(int index) {
+        checkIndex(index);
+        return hasValue != null && hasValue.get(index);
+    }
+
+    long numericValue(int index) {
+        return values[index];
+    }
+
+    CodeBlock expression(int index) {
+        checkIndex(index);
+        return expressions != null ? expressions[index] : null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= names.length) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + names.length);
+        }
+    }
+
+    /**
+     * Emits every member on its own line, separated by commas.
+     */
+    void emit(CodeWriter codeWriter) throws IOException {
+        // Only attributes and expressions can refer to types, so there's nothing else to collect.
+        boolean discarding = codeWriter.isDiscarding();
+        if (discarding && attributes == null && expressions == null) return;
+
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            if (attributes != null && attributes[i] != null) {
+                for (AttributeSpec attribute: attributes[i]) {
+                    attribute.emit(codeWriter, false);
+                    codeWriter.emit("\n");
+                }
+            }
+            CodeBlock expression = expressions != null ? expressions[i] : null;
+            if (discarding) {
+                if (expression != null) codeWriter.emit(expression);
+                continue;
+            }
+            line.setLength(0);
+            line.append(names[i]);
+            if (expression != null) {
+                codeWriter.emit(line.append(" = ").toString());
+                codeWriter.emit(expression);
+                line.setLength(0);
+            } else if (hasValue != null && hasValue.get(i)) {
+                line.append(" = ").append(values[i]);
+            }
+            codeWriter.emit(line.append(i + 1 < names.length ? ",\n" : "\n").toString());
+        }
+    }
+
+    static final class Builder {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private String[] names;
+        private long[] values;
+        private BitSet hasValue;
+        private CodeBlock[] expressions;
+        private AttributeSpec[][] attributes;
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(String name, boolean hasValue, long value, CodeBlock expression,
+                 AttributeSpec[] attributes) {
+            checkArgument(name != null && !name.isEmpty(), "name is null or empty");
+            if (names == null) {
+                names = new String[INITIAL_CAPACITY];
+            } else if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+            }
+            names[size] = name;
+            if (hasValue) {
+                if (this.hasValue == null) this.hasValue = new BitSet();
+                this.hasValue.set(size);
+                values = ensureCapacity(values);
+                values[size] = value;
+            }
+            if (expression != null) {
+                expressions = ensureCapacity(expressions, CodeBlock.class);
+                expressions[size] = expression;
+            }
+            if (attributes.length > 0) {
+                for (AttributeSpec attribute: attributes) {
+                    checkNotNull(attribute, "attribute == null");
+                }
+                this.attributes = ensureCapacity(this.attributes, AttributeSpec[].class);
+                this.attributes[size] = attributes.clone();
+            }
+            size++;
+        }
+
+        void addAll(EnumMembers members) {
+            for (int i = 0; i < members.size(); i++) {
+                AttributeSpec[] memberAttributes = members.attributes != null
+                        && members.attributes[i] != null
+                        ? members.attributes[i] : new AttributeSpec[0];
+                add(members.names[i], members.hasNumericValue(i),
+                        members.values != null ? members.values[i] : 0, members.expression(i),
+                        memberAttributes);
+            }
+        }
+
+        private long[] ensureCapacity(long[] array) {
+            if (array == null) return new long[names.length];
+            return array.length < names.length ? Arrays.copyOf(array, names.length) : array;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T[] ensureCapacity(T[] array, Class<T> type) {
+            if (array == null) {
+                return (T[]) Array.newInstance(type, names.length);
+            }
+            return array.length < names.length ? Arrays.copyOf(array, names.length) : array;
+        }
+
+        /**
+         * Returns a name that was added more than once, or null if every name is unique.
+         */
+        private String duplicate() {
+            String[] sorted = Arrays.copyOf(names, size);
+            Arrays.sort(sorted);
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i].equals(sorted[i - 1])) return sorted[i];
+            }
+            return null;
+        }
+
+        EnumMembers build() {
+            if (size == 0) return EMPTY;
+            String duplicate = duplicate();
+            checkArgument(duplicate == null, "duplicate enum member %s", duplicate);
+            return new EnumMembers(Arrays.copyOf(names, size),
+                    values != null ? Arrays.copyOf(values, size) : null,
+                    hasValue != null ? (BitSet) hasValue.clone() : null,
+                    expressions != null ? Arrays.copyOf(expressions, size) : null,
+                    attributes != null ? Arrays.copyOf(attributes, size) : null);
+        }
+    }
+}
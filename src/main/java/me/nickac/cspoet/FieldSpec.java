@@ -66,7 +66,7 @@ public final class FieldSpec {
         codeWriter.emitJavadoc(javadoc);
         codeWriter.emitAnnotations(annotations, false);
         codeWriter.emitModifiers(modifiers, implicitModifiers);
-        codeWriter.emit("$T $L", type, name);
+        codeWriter.emitType(type).emit(" ").emit(name);
         if (!initializer.isEmpty()) {
             codeWriter.emit(" = ");
             codeWriter.emit(initializer);
@@ -89,14 +89,7 @@ public final class FieldSpec {
 
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        try {
-            CodeWriter codeWriter = new CodeWriter(out);
-            emit(codeWriter, Collections.emptySet());
-            return out.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
-        }
+        return RenderContext.toString(codeWriter -> emit(codeWriter, Collections.emptySet()));
     }
 
     public Builder toBuilder() {
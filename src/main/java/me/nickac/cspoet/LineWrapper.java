@@ -22,9 +22,9 @@ import java.io.IOException;
  * or soft-wrapping spaces using {@link #wrappingSpace}.
  */
 final class LineWrapper {
-    private final Appendable out;
-    private final String indent;
-    private final int columnLimit;
+    private Appendable out;
+    private String indent;
+    private int columnLimit;
     /**
      * Characters written since the last wrapping space that haven't yet been flushed.
      */
@@ -52,12 +52,60 @@ final class LineWrapper {
         this.columnLimit = columnLimit;
     }
 
+    /**
+     * Discards any buffered text and retargets this line wrapper at {@code out}, keeping the
+     * capacity of its internal buffer.
+     */
+    void reset(Appendable out, String indent, int columnLimit) {
+        Util.checkNotNull(out, "out == null");
+        this.out = out;
+        this.indent = indent;
+        this.columnLimit = columnLimit;
+        this.buffer.setLength(0);
+        this.closed = false;
+        this.column = 0;
+        this.indentLevel = -1;
+        this.nextFlush = null;
+    }
+
+    /**
+     * Returns the number of characters written since the most recent newline, including any that
+     * are still buffered.
+     */
+    int column() {
+        return column;
+    }
+
+    int columnLimit() {
+        return columnLimit;
+    }
+
+    /**
+     * Returns true if everything written to this line wrapper is discarded.
+     */
+    boolean isDiscarding() {
+        return out == CodeWriter.NULL_APPENDABLE;
+    }
+
+    /**
+     * Sets the column limit. A limit of 0 disables wrapping: text is then written through without
+     * buffering, wrapping spaces are always spaces and zero-width spaces are dropped.
+     */
+    void columnLimit(int columnLimit) {
+        this.columnLimit = columnLimit;
+    }
+
     /**
      * Emit {@code s}. This may be buffered to permit line wraps to be inserted.
      */
     void append(String s) throws IOException {
         if (closed) throw new IllegalStateException("closed");
 
+        if (columnLimit == 0) {
+            out.append(s);
+            return;
+        }
+
         if (nextFlush != null) {
             int nextNewline = s.indexOf('\n');
 
@@ -87,6 +135,10 @@ final class LineWrapper {
     void wrappingSpace(int indentLevel) throws IOException {
         if (closed) throw new IllegalStateException("closed");
 
+        if (columnLimit == 0) {
+            out.append(' ');
+            return;
+        }
         if (this.nextFlush != null) flush(nextFlush);
         column++; // Increment the column even though the space is deferred to next call to flush().
         this.nextFlush = FlushType.SPACE;
@@ -99,6 +151,7 @@ final class LineWrapper {
     void zeroWidthSpace(int indentLevel) throws IOException {
         if (closed) throw new IllegalStateException("closed");
 
+        if (columnLimit == 0) return;
         if (column == 0) return;
         if (this.nextFlush != null) flush(nextFlush);
         this.nextFlush = FlushType.EMPTY;
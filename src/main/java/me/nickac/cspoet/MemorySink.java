@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+
+/**
+ * Holds generated sources in memory, for consumers in the same process that would otherwise read
+ * them back from disk: <pre>   {@code
+ *
+ *   MemorySink sink = new MemorySink();
+ *   sink.writeAll(files);
+ *   ByteBuffer source = sink.get("Foo/Bar/Baz.cs");
+ * }</pre>
+ *
+ * <p>Each file is held as a UTF-8 byte array of exactly its length, so a tree of mostly ASCII
+ * sources takes about half the memory of their strings. Files are ordered by path, which puts the
+ * files of a namespace next to each other.
+ */
+public final class MemorySink implements SourceSink {
+    private final ConcurrentSkipListMap<String, byte[]> files = new ConcurrentSkipListMap<>();
+    private final AtomicLong totalSize = new AtomicLong();
+
+    @Override
+    public void write(String path, ByteBuffer content) {
+        checkNotNull(path, "path == null");
+        checkNotNull(content, "content == null");
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        put(path, bytes);
+    }
+
+    @Override
+    public void write(CSharpFile file) {
+        // The encoded string is already exactly sized and nobody else holds it, so keep it as is.
+        put(file.relativePath(), file.toString().getBytes(UTF_8));
+    }
+
+    private void put(String path, byte[] bytes) {
+        checkArgument(isRelative(path), "path %s is not relative or leaves its directory", path);
+        byte[] replaced = files.put(path, bytes);
+        totalSize.addAndGet(replaced != null ? bytes.length - replaced.length : bytes.length);
+    }
+
+    /**
+     * Returns true if {@code path} is non-empty, relative and has no {@code ..} segments, so that
+     * it stays within whatever directory it's resolved against.
+     */
+    private static boolean isRelative(String path) {
+        if (path.isEmpty() || path.charAt(0) == '/' || path.charAt(0) == '\\'
+                || path.indexOf(':') != -1) {
+            return false;
+        }
+        for (String segment: path.split("[/\\\\]")) {
+            if (segment.equals("..")) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a read-only view of the file at {@code path}, or null if there is no such file.
+     */
+    public ByteBuffer get(String path) {
+        checkNotNull(path, "path == null");
+        byte[] bytes = files.get(path);
+        return bytes != null ? ByteBuffer.wrap(bytes).asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Returns the file at {@code path} decoded as UTF-8, or null if there is no such file.
+     */
+    public String getString(String path) {
+        checkNotNull(path, "path == null");
+        byte[] bytes = files.get(path);
+        return bytes != null ? new String(bytes, UTF_8) : null;
+    }
+
+    /**
+     * Returns a live, read-only view of the paths of the files in this sink, in order.
+     */
+    public NavigableSet<String> paths() {
+        return Collections.unmodifiableNavigableSet(files.keySet());
+    }
+
+    /**
+     * Passes each file to {@code action} in path order, as a read-only view of its content.
+     */
+    public void forEach(BiConsumer<String, ByteBuffer> action) {
+        checkNotNull(action, "action == null");
+        for (Map.Entry<String, byte[]> entry: files.entrySet()) {
+            action.accept(entry.getKey(), ByteBuffer.wrap(entry.getValue()).asReadOnlyBuffer());
+        }
+    }
+
+    /**
+     * Returns the number of files in this sink.
+     */
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * Returns the total length in bytes of the files in this sink.
+     */
+    public long totalSize() {
+        return totalSize.get();
+    }
+
+    /**
+     * Writes each file to its path under {@code directory}, creating directories as needed and
+     * replacing files that already exist.
+     */
+    public void flushTo(Path directory) throws IOException {
+        checkNotNull(directory, "directory == null");
+        checkArgument(Files.notExists(directory) || Files.isDirectory(directory),
+                "path %s exists but is not a directory.", directory);
+        Path root = directory.toAbsolutePath().normalize();
+        // Check every path before writing anything, so that a bad one doesn't leave a partial tree.
+        Map<Path, byte[]> targets = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry: files.entrySet()) {
+            Path target = root.resolve(entry.getKey()).normalize();
+            checkArgument(target.startsWith(root) && !target.equals(root),
+                    "path %s is outside of %s", entry.getKey(), directory);
+            targets.put(target, entry.getValue());
+        }
+        Path created = null;
+        for (Map.Entry<Path, byte[]> entry: targets.entrySet()) {
+            // Paths are sorted, so the files of a directory are usually written one after another.
+            Path parent = entry.getKey().getParent();
+            if (!parent.equals(created)) {
+                Files.createDirectories(parent);
+                created = parent;
+            }
+            Files.write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes every file from this sink.
+     */
+    public void clear() {
+        for (String path: files.keySet()) {
+            byte[] removed = files.remove(path);
+            if (removed != null) {
+                totalSize.addAndGet(-removed.length);
+            }
+        }
+    }
+
+    /**
+     * Does nothing; the files stay available after the sink is closed.
+     */
+    @Override
+    public void close() {
+    }
+}
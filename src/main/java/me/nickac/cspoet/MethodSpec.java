@@ -128,6 +128,14 @@ public final class MethodSpec {
         return methodBuilder;
     }
 
+    /**
+     * Like {@link #overriding(ExecutableElement)}, but the method is converted at most once for
+     * {@code context}. Each call returns a new builder.
+     */
+    public static Builder overriding(ExecutableElement method, ConversionContext context) {
+        return context.override(method).toBuilder();
+    }
+
     /**
      * Returns a new method spec builder that overrides {@code method} as a member of {@code
      * enclosing}. This will resolve type parameters: for example overriding {@link
@@ -179,9 +187,10 @@ public final class MethodSpec {
         }
 
         if (isConstructor() || hasModifier(CSharpModifier.OPERATOR)) {
-            codeWriter.emit("$L($Z", enclosingName);
+            codeWriter.emitLiteral(enclosingName);
+            codeWriter.emit("(").emitZeroWidthSpace();
         } else {
-            codeWriter.emit("$t $L($Z", returnType, name);
+            codeWriter.emitSimpleType(returnType).emit(" ").emit(name).emit("(").emitZeroWidthSpace();
         }
 
         boolean firstParameter = true;
@@ -204,7 +213,7 @@ public final class MethodSpec {
             boolean firstException = true;
             for (TypeName exception: exceptions) {
                 if (!firstException) codeWriter.emit(",");
-                codeWriter.emitWrappingSpace().emit("$T", exception);
+                codeWriter.emitWrappingSpace().emitType(exception);
                 firstException = false;
             }
         }
@@ -255,41 +264,12 @@ public final class MethodSpec {
 
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        try {
-            CodeWriter codeWriter = new CodeWriter(out);
-            emit(codeWriter, "Constructor", Collections.emptySet());
-            return out.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
-        }
+        return RenderContext.toString(codeWriter -> emit(codeWriter, "Constructor", Collections.emptySet()));
     }
 
-    private static final Appendable NULL_APPENDABLE = new Appendable() {
-        @Override
-        public Appendable append(CharSequence charSequence) {
-            return this;
-        }
-
-        @Override
-        public Appendable append(CharSequence charSequence, int start, int end) {
-            return this;
-        }
-
-        @Override
-        public Appendable append(char c) {
-            return this;
-        }
-    };
-
     public String[] getUsings() {
-        CodeWriter importsCollector = new CodeWriter(NULL_APPENDABLE, "", Collections.emptySet(), Collections.emptySet());
-        try {
-            emit(importsCollector, "", Collections.singleton(CSharpModifier.PRIVATE));
-        } catch (IOException e) {
-            return new String[0];
-        }
-        Map<String, ClassName> suggestedImports = importsCollector.suggestedImports();
+        Map<String, ClassName> suggestedImports = RenderContext.suggestedImports(
+                codeWriter -> emit(codeWriter, "", Collections.singleton(CSharpModifier.PRIVATE)));
         return suggestedImports.entrySet().stream().map(c -> String.format("%s", c.getValue().packageName())).toArray(String[]::new);
     }
 
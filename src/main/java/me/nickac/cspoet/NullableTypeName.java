@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static me.nickac.cspoet.Util.checkArgument;
+
+/**
+ * A nullable type like {@code int?}.
+ */
+public final class NullableTypeName extends TypeName {
+    public final TypeName underlyingType;
+
+    private NullableTypeName(TypeName underlyingType) {
+        this(underlyingType, Collections.emptyList());
+    }
+
+    private NullableTypeName(TypeName underlyingType, List<AttributeSpec> annotations) {
+        super(annotations);
+        this.underlyingType = Util.checkNotNull(underlyingType, "underlyingType == null");
+        checkArgument(underlyingType != VOID && !(underlyingType instanceof NullableTypeName),
+                "invalid underlying type: %s", underlyingType);
+    }
+
+    /**
+     * Returns a nullable type whose values are {@code underlyingType} or null.
+     */
+    public static NullableTypeName of(TypeName underlyingType) {
+        return SpecInterner.intern(new NullableTypeName(underlyingType));
+    }
+
+    @Override
+    public NullableTypeName annotated(List<AttributeSpec> annotations) {
+        return new NullableTypeName(underlyingType, concatAnnotations(annotations));
+    }
+
+    @Override
+    public TypeName withoutAnnotations() {
+        return new NullableTypeName(underlyingType);
+    }
+
+    @Override
+    CodeWriter emit(CodeWriter out) throws IOException {
+        if (isAnnotated()) {
+            emitAnnotations(out);
+        }
+        underlyingType.emit(out);
+        return out.emit("?");
+    }
+}
@@ -81,9 +81,9 @@ public final class ParameterSpec {
         if (varargs) {
             TypeName.asArray(type).emit(codeWriter, true);
         } else {
-            codeWriter.emit("$t", type);
+            codeWriter.emitSimpleType(type);
         }
-        codeWriter.emit(" $L", name);
+        codeWriter.emit(" ").emit(name);
     }
 
     @Override
@@ -101,14 +101,7 @@ public final class ParameterSpec {
 
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        try {
-            CodeWriter codeWriter = new CodeWriter(out);
-            emit(codeWriter, false);
-            return out.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
-        }
+        return RenderContext.toString(codeWriter -> emit(codeWriter, false));
     }
 
     public Builder toBuilder() {
@@ -27,25 +27,26 @@ import static me.nickac.cspoet.Util.checkNotNull;
 public final class ParameterizedTypeName extends TypeName {
     public final ClassName rawType;
     public final List<TypeName> typeArguments;
-    private final ParameterizedTypeName enclosingType;
+    final ParameterizedTypeName enclosingType;
 
     ParameterizedTypeName(ParameterizedTypeName enclosingType, ClassName rawType,
                           List<TypeName> typeArguments) {
-        this(enclosingType, rawType, typeArguments, new ArrayList<>());
+        this(enclosingType, rawType, typeArguments, Collections.emptyList());
     }
 
     private ParameterizedTypeName(ParameterizedTypeName enclosingType, ClassName rawType,
                                   List<TypeName> typeArguments, List<AttributeSpec> annotations) {
         super(annotations);
-        this.rawType = checkNotNull(rawType, "rawType == null").annotated(annotations);
+        checkNotNull(rawType, "rawType == null");
+        this.rawType = annotations.isEmpty() ? rawType : rawType.annotated(annotations);
         this.enclosingType = enclosingType;
         this.typeArguments = Util.immutableList(typeArguments);
 
         checkArgument(!this.typeArguments.isEmpty() || enclosingType != null,
                 "no type arguments: %s", rawType);
         for (TypeName typeArgument: this.typeArguments) {
-            checkArgument(!typeArgument.isPrimitive() && typeArgument != VOID,
-                    "invalid type parameter: %s", typeArgument);
+            // Unlike Java, C# allows value types like int as type arguments.
+            checkArgument(typeArgument != VOID, "invalid type parameter: %s", typeArgument);
         }
     }
 
@@ -53,14 +54,16 @@ public final class ParameterizedTypeName extends TypeName {
      * Returns a parameterized type, applying {@code typeArguments} to {@code rawType}.
      */
     public static ParameterizedTypeName get(ClassName rawType, TypeName... typeArguments) {
-        return new ParameterizedTypeName(null, rawType, Arrays.asList(typeArguments));
+        return SpecInterner.intern(
+                new ParameterizedTypeName(null, rawType, Arrays.asList(typeArguments)));
     }
 
     /**
      * Returns a parameterized type, applying {@code typeArguments} to {@code rawType}.
      */
     public static ParameterizedTypeName get(Class<?> rawType, Type... typeArguments) {
-        return new ParameterizedTypeName(null, ClassName.get(rawType), list(typeArguments));
+        return SpecInterner.intern(
+                new ParameterizedTypeName(null, ClassName.get(rawType), list(typeArguments)));
     }
 
     /**
@@ -93,7 +96,7 @@ public final class ParameterizedTypeName extends TypeName {
     @Override
     public TypeName withoutAnnotations() {
         return new ParameterizedTypeName(
-                enclosingType, rawType.withoutAnnotations(), typeArguments, new ArrayList<>());
+                enclosingType, rawType.withoutAnnotations(), typeArguments, Collections.emptyList());
     }
 
     @Override
@@ -128,8 +131,8 @@ public final class ParameterizedTypeName extends TypeName {
      */
     public ParameterizedTypeName nestedClass(String name) {
         checkNotNull(name, "name == null");
-        return new ParameterizedTypeName(this, rawType.nestedClass(name), new ArrayList<>(),
-                new ArrayList<>());
+        return new ParameterizedTypeName(this, rawType.nestedClass(name), Collections.emptyList(),
+                Collections.emptyList());
     }
 
     /**
@@ -139,6 +142,6 @@ public final class ParameterizedTypeName extends TypeName {
     public ParameterizedTypeName nestedClass(String name, List<TypeName> typeArguments) {
         checkNotNull(name, "name == null");
         return new ParameterizedTypeName(this, rawType.nestedClass(name), typeArguments,
-                new ArrayList<>());
+                Collections.emptyList());
     }
 }
@@ -57,7 +57,7 @@ public class PropertySpec {
         codeWriter.emitAnnotations(annotations, false);
         codeWriter.emitModifiers(modifiers, implicitModifiers);
 
-        codeWriter.emit("$t $L", returnType, name);
+        codeWriter.emitSimpleType(returnType).emit(" ").emit(name);
 
         boolean firstParameter = true;
         for (Iterator<ParameterSpec> i = parameters.iterator(); i.hasNext(); ) {
@@ -69,10 +69,7 @@ public class PropertySpec {
 
         if (!hasModifier(CSharpModifier.ABSTRACT) && !getterCode.isEmpty() && getterCode.statementCount == 1 && setterCode.isEmpty()) {
             codeWriter.emit(" => ");
-            String getter = getterCode.toString();
-            if (getter.startsWith("return "))
-                getter = getter.substring(7);
-            codeWriter.emit(getter);
+            codeWriter.emit(getterCode.withoutPrefix("return "));
         } else {
             codeWriter.emit(" {\n");
 
@@ -92,10 +89,7 @@ public class PropertySpec {
                     hasInsertedNewLine = true;
                 } else {
                     codeWriter.emit("get => ");
-                    String getter = getterCode.toString();
-                    if (getter.startsWith("return "))
-                        getter = getter.substring(7);
-                    codeWriter.emit(getter);
+                    codeWriter.emit(getterCode.withoutPrefix("return "));
                 }
             }
 
@@ -130,45 +124,16 @@ public class PropertySpec {
     }
 
 
-    private static final Appendable NULL_APPENDABLE = new Appendable() {
-        @Override
-        public Appendable append(CharSequence charSequence) {
-            return this;
-        }
-
-        @Override
-        public Appendable append(CharSequence charSequence, int start, int end) {
-            return this;
-        }
-
-        @Override
-        public Appendable append(char c) {
-            return this;
-        }
-    };
-
     public String[] getUsings() {
-        CodeWriter importsCollector = new CodeWriter(NULL_APPENDABLE, "", Collections.emptySet(), Collections.emptySet());
-        try {
-            emit(importsCollector, "", Collections.singleton(CSharpModifier.PRIVATE));
-        } catch (IOException e) {
-            return new String[0];
-        }
-        Map<String, ClassName> suggestedImports = importsCollector.suggestedImports();
+        Map<String, ClassName> suggestedImports = RenderContext.suggestedImports(
+                codeWriter -> emit(codeWriter, "", Collections.singleton(CSharpModifier.PRIVATE)));
         return suggestedImports.entrySet().stream().map(c -> String.format("%s", c.getValue().packageName())).toArray(String[]::new);
     }
 
 
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        try {
-            CodeWriter codeWriter = new CodeWriter(out);
-            emit(codeWriter, "Constructor", Collections.emptySet());
-            return out.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
-        }
+        return RenderContext.toString(codeWriter -> emit(codeWriter, "Constructor", Collections.emptySet()));
     }
 
     public static final class Builder {
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+
+/**
+ * Keeps the rendered code of files in a directory, so that a later run that builds a structurally
+ * equal file gets its code without collecting imports or rendering: <pre>   {@code
+ *
+ *   RenderCache cache = RenderCache.builder(Paths.get(".cache/cspoet")).maxSize(512 << 20).build();
+ *   for (CSharpFile file: files) {
+ *     cache.write(file, sink);
+ *   }
+ * }</pre>
+ *
+ * <p>Entries are named by a SHA-256 hash of the file's structure, its emission settings and the
+ * version of this library. They're written to a temporary file and moved into place, so readers
+ * never see partial entries, and any number of processes may share a directory. Once the directory
+ * grows beyond its maximum size, the entries used least recently are deleted, under a file lock so
+ * that processes don't evict concurrently.
+ *
+ * <p>Files whose code depends on more than their structure, like those with {@linkplain
+ * BinaryLiteral binary literals}, are rendered without being cached.
+ */
+public final class RenderCache {
+    /** Changes whenever the same structure may render differently, invalidating every entry. */
+    private static final int FORMAT = 2;
+    /** The version of this library, written by the build into {@code version.properties}. */
+    private static final String VERSION = readVersion();
+    private static final String LOCK_FILE = ".lock";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writtenSinceEviction = new AtomicLong();
+
+    private RenderCache(Builder builder) {
+        this.directory = builder.directory;
+        this.maxSize = builder.maxSize;
+    }
+
+    public static Builder builder(Path directory) {
+        checkNotNull(directory, "directory == null");
+        return new Builder(directory);
+    }
+
+    /**
+     * Returns the code of {@code file} as UTF-8, from the cache if possible.
+     */
+    public byte[] render(CSharpFile file) throws IOException {
+        checkNotNull(file, "file == null");
+        Path entry = entry(file);
+        if (entry == null) {
+            return file.toString().getBytes(UTF_8);
+        }
+
+        try {
+            byte[] cached = Files.readAllBytes(entry);
+            hits.incrementAndGet();
+            touch(entry);
+            return cached;
+        } catch (NoSuchFileException e) {
+            // A miss, or an entry evicted by another process since.
+        }
+
+        misses.incrementAndGet();
+        byte[] rendered = file.toString().getBytes(UTF_8);
+        store(entry, rendered);
+        if (writtenSinceEviction.addAndGet(rendered.length) > maxSize / 8) {
+            writtenSinceEviction.set(0);
+            evict();
+        }
+        return rendered;
+    }
+
+    /**
+     * Writes the code of {@code file} to {@code sink} at its path, from the cache if possible.
+     */
+    public void write(CSharpFile file, SourceSink sink) throws IOException {
+        checkNotNull(sink, "sink == null");
+        sink.write(file.relativePath(), ByteBuffer.wrap(render(file)));
+    }
+
+    /**
+     * Returns the number of files whose code was found in the cache.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of files that had to be rendered and were then added to the cache.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the path of the entry for {@code file}, or null if it can't be cached.
+     */
+    private Path entry(CSharpFile file) {
+        MessageDigest digest = newDigest();
+        digest.update(("cspoet " + FORMAT + " " + VERSION).getBytes(UTF_8));
+        if (!Structure.hash(file, digest)) return null;
+        byte[] hash = digest.digest();
+        char[] name = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            name[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            name[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        // Fan out over 256 directories to keep each one small.
+        return directory.resolve(new String(name, 0, 2)).resolve(new String(name, 2, name.length - 2));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Reads the version the build filtered into {@code version.properties}. Classes compiled
+     * without it, like from an IDE, share the version {@code dev}: their entries may outlive
+     * changes to rendering, so such caches should be cleared by hand.
+     */
+    private static String readVersion() {
+        try (InputStream in = RenderCache.class.getResourceAsStream("version.properties")) {
+            if (in == null) return "dev";
+            Properties properties = new Properties();
+            properties.load(in);
+            String version = properties.getProperty("version", "");
+            return version.isEmpty() || version.startsWith("${") ? "dev" : version;
+        } catch (IOException e) {
+            return "dev";
+        }
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Evicted in the meantime; the entry was still read in full.
+        }
+    }
+
+    private static void store(Path entry, byte[] content) throws IOException {
+        Path parent = entry.getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, entry.getFileName().toString(), TEMP_SUFFIX);
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is at most nine tenths of its maximum
+     * size, leaving room to grow before the next eviction. Does nothing if the cache is within its
+     * maximum size.
+     */
+    public void evict() throws IOException {
+        // File locks are held by the whole process, so threads take turns before taking one.
+        synchronized (RenderCache.class) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    evictLocked();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private void evictLocked() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long size = 0;
+        try (DirectoryStream<Path> buckets = Files.newDirectoryStream(directory,
+                path -> Files.isDirectory(path))) {
+            for (Path bucket: buckets) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(bucket)) {
+                    for (Path file: files) {
+                        if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) continue;
+                        try {
+                            BasicFileAttributes attributes =
+                                    Files.readAttributes(file, BasicFileAttributes.class);
+                            entries.add(new Entry(file, attributes));
+                            size += attributes.size();
+                        } catch (NoSuchFileException e) {
+                            // Replaced or deleted while listing.
+                        }
+                    }
+                }
+            }
+        }
+        if (size <= maxSize) return;
+
+        entries.sort(Comparator.comparingLong(entry -> entry.lastModified));
+        long target = maxSize / 10 * 9;
+        for (Entry entry: entries) {
+            if (size <= target) break;
+            Files.deleteIfExists(entry.path);
+            size -= entry.size;
+        }
+    }
+
+    private static final class Entry {
+        final Path path;
+        final long size;
+        final long lastModified;
+
+        Entry(Path path, BasicFileAttributes attributes) {
+            this.path = path;
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    public static final class Builder {
+        private final Path directory;
+        private long maxSize = 256L * 1024 * 1024;
+
+        private Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the size in bytes beyond which entries are evicted. Defaults to 256 MiB.
+         */
+        public Builder maxSize(long maxSize) {
+            checkArgument(maxSize > 0, "maxSize <= 0: %s", maxSize);
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Returns a cache in the configured directory, creating the directory if necessary.
+         */
+        public RenderCache build() throws IOException {
+            Files.createDirectories(directory);
+            return new RenderCache(this);
+        }
+    }
+}
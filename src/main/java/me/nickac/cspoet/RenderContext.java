@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static me.nickac.cspoet.Util.checkState;
+
+/**
+ * A reusable string buffer and code writer for rendering specs. Every {@code toString()} in this
+ * library borrows the calling thread's pooled context rather than allocating a new buffer, code
+ * writer and line wrapper each time.
+ *
+ * <p>Callers that render many specs in a loop can also hold a context of their own: <pre>   {@code
+ *
+ *   RenderContext context = RenderContext.create();
+ *   for (CSharpFile file : files) {
+ *     String source = context.render(file);
+ *     ...
+ *   }
+ * }</pre>
+ *
+ * <p>A context retains the capacity of its buffers between renders, up to a limit. It is not
+ * thread safe; use one context per thread.
+ */
+public final class RenderContext {
+    /**
+     * Buffers that grow larger than this are dropped after use instead of being retained.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final String DEFAULT_INDENT = "\t";
+
+    private static final ThreadLocal<RenderContext> POOL = ThreadLocal.withInitial(RenderContext::new);
+
+    private final CodeWriter codeWriter = new CodeWriter(CodeWriter.NULL_APPENDABLE);
+    private StringBuilder buffer = new StringBuilder();
+    private boolean inUse;
+
+    private RenderContext() {
+    }
+
+    public static RenderContext create() {
+        return new RenderContext();
+    }
+
+    /**
+     * Returns the calling thread's pooled context. If that context is already rendering (because a
+     * spec's {@code toString()} was called while emitting another spec), a new context is returned.
+     */
+    static RenderContext acquire() {
+        RenderContext context = POOL.get();
+        if (context.inUse) {
+            context = new RenderContext();
+        }
+        context.inUse = true;
+        return context;
+    }
+
+    /**
+     * Renders {@code emitter} with the calling thread's pooled context.
+     */
+    static String toString(Emitter emitter) {
+        RenderContext context = acquire();
+        try {
+            return context.renderTo(emitter);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Renders {@code file} with the calling thread's pooled context.
+     */
+    static String toString(CSharpFile file) {
+        RenderContext context = acquire();
+        try {
+            context.writeFile(file, context.buffer);
+            return context.buffer.toString();
+        } catch (IOException e) {
+            throw new AssertionError();
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Runs {@code emitter} against a discarding writer and returns the types it would import.
+     */
+    static Map<String, ClassName> suggestedImports(Emitter emitter) {
+        RenderContext context = acquire();
+        try {
+            CodeWriter importsCollector = context.codeWriter.reset(CodeWriter.NULL_APPENDABLE, "",
+                    Collections.emptyMap(), Collections.emptySet(), Collections.emptySet());
+            emitter.emit(importsCollector);
+            return importsCollector.suggestedImports();
+        } catch (IOException e) {
+            throw new AssertionError();
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Writes {@code file} to {@code out} with the calling thread's pooled context.
+     */
+    static void write(CSharpFile file, Appendable out) throws IOException {
+        RenderContext context = acquire();
+        try {
+            context.writeFile(file, out);
+        } finally {
+            context.release();
+        }
+    }
+
+    public String render(CSharpFile file) {
+        checkState(!inUse, "render context is already in use");
+        inUse = true;
+        try {
+            writeFile(file, buffer);
+            return buffer.toString();
+        } catch (IOException e) {
+            throw new AssertionError();
+        } finally {
+            release();
+        }
+    }
+
+    public void writeTo(CSharpFile file, Appendable out) throws IOException {
+        checkState(!inUse, "render context is already in use");
+        inUse = true;
+        try {
+            writeFile(file, out);
+        } finally {
+            release();
+        }
+    }
+
+    public String render(TypeSpec typeSpec) {
+        return render(codeWriter -> typeSpec.emit(codeWriter, null, Collections.emptySet()));
+    }
+
+    public String render(MethodSpec methodSpec) {
+        return render(codeWriter -> methodSpec.emit(codeWriter, "Constructor", Collections.emptySet()));
+    }
+
+    public String render(PropertySpec propertySpec) {
+        return render(codeWriter -> propertySpec.emit(codeWriter, "Constructor", Collections.emptySet()));
+    }
+
+    public String render(FieldSpec fieldSpec) {
+        return render(codeWriter -> fieldSpec.emit(codeWriter, Collections.emptySet()));
+    }
+
+    public String render(ParameterSpec parameterSpec) {
+        return render(codeWriter -> parameterSpec.emit(codeWriter, false));
+    }
+
+    public String render(AttributeSpec attributeSpec) {
+        return render(codeWriter -> attributeSpec.emit(codeWriter, true));
+    }
+
+    public String render(CodeBlock codeBlock) {
+        return render(codeWriter -> codeWriter.emit(codeBlock));
+    }
+
+    public String render(TypeName typeName) {
+        return render(typeName::emit);
+    }
+
+    private String render(Emitter emitter) {
+        checkState(!inUse, "render context is already in use");
+        inUse = true;
+        try {
+            return renderTo(emitter);
+        } finally {
+            release();
+        }
+    }
+
+    private String renderTo(Emitter emitter) {
+        try {
+            emitter.emit(codeWriter.reset(buffer, DEFAULT_INDENT, Collections.emptyMap(),
+                    Collections.emptySet(), Collections.emptySet()));
+            return buffer.toString();
+        } catch (IOException e) {
+            throw new AssertionError();
+        }
+    }
+
+    private void writeFile(CSharpFile file, Appendable out) throws IOException {
+        // First pass: emit the entire class, just to collect the types we'll need to import.
+        codeWriter.reset(CodeWriter.NULL_APPENDABLE, file.indent, Collections.emptyMap(),
+                file.staticImports, file.nonStaticImports);
+        configure(file);
+        file.emit(codeWriter);
+        Map<String, ClassName> suggestedImports = codeWriter.suggestedImports();
+
+        // Second pass: write the code, taking advantage of the imports.
+        codeWriter.reset(out, file.indent, suggestedImports, file.staticImports, file.nonStaticImports);
+        configure(file);
+        file.emit(codeWriter);
+    }
+
+    private void configure(CSharpFile file) {
+        codeWriter.columnLimit(file.columnLimit);
+        if (file.style == CSharpFile.Style.COMPACT) codeWriter.compact();
+    }
+
+    private void release() {
+        codeWriter.reset(CodeWriter.NULL_APPENDABLE, DEFAULT_INDENT, Collections.emptyMap(),
+                Collections.emptySet(), Collections.emptySet());
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder();
+        } else {
+            buffer.setLength(0);
+        }
+        inUse = false;
+    }
+
+    /**
+     * Emits a spec to a code writer.
+     */
+    interface Emitter {
+        void emit(CodeWriter codeWriter) throws IOException;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+
+/**
+ * Renders files and writes them to a sink at the same time, so that neither the CPU nor the disk
+ * waits on the other: <pre>   {@code
+ *
+ *   try (ZipSink sink = ZipSink.builder(Paths.get("generated.zip")).build()) {
+ *     RenderPipeline.builder(sink).renderers(4).build().run(model.files());
+ *   }
+ * }</pre>
+ *
+ * <p>Renderer threads pull files from a lazy iterator or stream, encode them as UTF-8 and put them
+ * in a bounded queue that writer threads drain into the sink. A renderer blocks while the queue is
+ * full, so at most {@linkplain Builder#queueCapacity the queue's capacity} of rendered files are in
+ * memory at once, and a file's specs become garbage as soon as it has been rendered.
+ */
+public final class RenderPipeline {
+    private static final Rendered END = new Rendered(null, null);
+
+    private final SourceSink sink;
+    private final int renderers;
+    private final int writers;
+    private final int queueCapacity;
+
+    private RenderPipeline(Builder builder) {
+        this.sink = builder.sink;
+        this.renderers = builder.renderers;
+        this.writers = builder.writers;
+        this.queueCapacity = builder.queueCapacity;
+    }
+
+    public static Builder builder(SourceSink sink) {
+        checkNotNull(sink, "sink == null");
+        return new Builder(sink);
+    }
+
+    /**
+     * Renders and writes each file of {@code files}, closing the stream when done.
+     */
+    public void run(Stream<CSharpFile> files) throws IOException {
+        checkNotNull(files, "files == null");
+        try (Stream<CSharpFile> stream = files) {
+            run(stream.iterator());
+        }
+    }
+
+    /**
+     * Renders and writes each file of {@code files}. The iterator is only ever used by one thread at
+     * a time. If anything fails, the remaining files are skipped and the first failure is thrown
+     * once every thread has stopped.
+     */
+    public void run(Iterator<CSharpFile> files) throws IOException {
+        checkNotNull(files, "files == null");
+        Run run = new Run(files);
+        List<Thread> threads = new ArrayList<>(renderers + writers);
+        for (int i = 0; i < renderers; i++) {
+            threads.add(new Thread(run::render, "cspoet-renderer-" + i));
+        }
+        for (int i = 0; i < writers; i++) {
+            threads.add(new Thread(run::write, "cspoet-writer-" + i));
+        }
+        for (Thread thread: threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread: threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            run.fail(e);
+            for (Thread thread: threads) {
+                thread.interrupt();
+            }
+            // The caller may close the sink as soon as this returns, so wait for every write.
+            joinUninterruptibly(threads);
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable failure = run.failure.get();
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        if (failure instanceof Error) throw (Error) failure;
+        if (failure instanceof InterruptedException) {
+            InterruptedIOException interrupted = new InterruptedIOException("interrupted");
+            interrupted.initCause(failure);
+            throw interrupted;
+        }
+    }
+
+    private static void joinUninterruptibly(List<Thread> threads) {
+        boolean interrupted = false;
+        for (Thread thread: threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Rendered {
+        final String path;
+        final ByteBuffer content;
+
+        Rendered(String path, ByteBuffer content) {
+            this.path = path;
+            this.content = content;
+        }
+    }
+
+    /**
+     * The state shared by the threads of a single run.
+     */
+    private final class Run {
+        private final Iterator<CSharpFile> files;
+        private final BlockingQueue<Rendered> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private int activeRenderers = renderers;
+        private int activeWriters = writers;
+
+        Run(Iterator<CSharpFile> files) {
+            this.files = files;
+        }
+
+        void render() {
+            try {
+                for (Rendered rendered; failure.get() == null && (rendered = renderNext()) != null; ) {
+                    queue.put(rendered);
+                }
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                rendererDone();
+            }
+        }
+
+        void write() {
+            try {
+                for (Rendered rendered; (rendered = queue.take()) != END; ) {
+                    // After a failure, keep draining so that blocked renderers can finish.
+                    if (failure.get() != null) continue;
+                    try {
+                        sink.write(rendered.path, rendered.content);
+                    } catch (Throwable e) {
+                        fail(e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                fail(e);
+            } finally {
+                synchronized (this) {
+                    activeWriters--;
+                }
+            }
+        }
+
+        /**
+         * Renders the next file, or returns null if there are none left. Only the rendered bytes
+         * are kept, so the file isn't reachable from this thread while it waits on the queue.
+         */
+        private Rendered renderNext() {
+            CSharpFile file;
+            synchronized (files) {
+                if (!files.hasNext()) return null;
+                file = checkNotNull(files.next(), "files contains null");
+            }
+            byte[] bytes = file.toString().getBytes(UTF_8);
+            return new Rendered(file.relativePath(), ByteBuffer.wrap(bytes));
+        }
+
+        /**
+         * Ends the writers once the last renderer is done. Every writer gets its own end marker,
+         * unless writers were interrupted and can no longer take them.
+         */
+        private void rendererDone() {
+            synchronized (this) {
+                if (--activeRenderers > 0) return;
+            }
+            try {
+                for (int i = 0; i < writers; i++) {
+                    while (!queue.offer(END, 10, TimeUnit.MILLISECONDS)) {
+                        synchronized (this) {
+                            if (activeWriters == 0) return;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                fail(e);
+            }
+        }
+
+        void fail(Throwable e) {
+            if (!failure.compareAndSet(null, e) && failure.get() != e) {
+                failure.get().addSuppressed(e);
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final SourceSink sink;
+        private int renderers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        private int writers = 1;
+        private int queueCapacity = 64;
+
+        private Builder(SourceSink sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Sets the number of threads rendering files. Defaults to one less than the number of
+         * processors, leaving one for the writers.
+         */
+        public Builder renderers(int renderers) {
+            checkArgument(renderers > 0, "renderers <= 0: %s", renderers);
+            this.renderers = renderers;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads writing files to the sink. Defaults to one, which suits sinks
+         * like archives that write one file at a time anyway.
+         */
+        public Builder writers(int writers) {
+            checkArgument(writers > 0, "writers <= 0: %s", writers);
+            this.writers = writers;
+            return this;
+        }
+
+        /**
+         * Sets the number of rendered files that may wait for a writer. Defaults to 64.
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            checkArgument(queueCapacity > 0, "queueCapacity <= 0: %s", queueCapacity);
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public RenderPipeline build() {
+            return new RenderPipeline(this);
+        }
+    }
+}
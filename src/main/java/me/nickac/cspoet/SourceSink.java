@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A destination for generated source files, such as an archive. Files are stored at paths relative
+ * to a source root, using the standard directory structure of their namespace.
+ *
+ * <p>Implementations must be safe for use by multiple threads, so that files can be rendered and
+ * written concurrently.
+ */
+public interface SourceSink extends Closeable {
+    /**
+     * Stores the remaining bytes of {@code content} at {@code path}, a relative path like {@code
+     * Foo/Bar/Baz.cs}.
+     */
+    void write(String path, ByteBuffer content) throws IOException;
+
+    /**
+     * Renders {@code file} and stores it as UTF-8 at its path in the standard directory structure.
+     */
+    default void write(CSharpFile file) throws IOException {
+        write(file.relativePath(), ByteBuffer.wrap(file.toString().getBytes(UTF_8)));
+    }
+
+    /**
+     * Renders and stores each of {@code files}. Files are rendered in parallel, and stored in the
+     * order they finish rendering. If a file can't be stored, its failure is thrown and files that
+     * haven't been started are skipped.
+     */
+    default void writeAll(Collection<CSharpFile> files) throws IOException {
+        Util.checkNotNull(files, "files == null");
+        try {
+            files.parallelStream().forEach(file -> {
+                try {
+                    write(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+
+/**
+ * The differences between two versions of a file, found by comparing their specs rather than their
+ * code. Regenerating only the files that changed between two runs skips rendering the rest: <pre>
+ * {@code
+ *
+ *   for (SpecDiff diff: SpecDiff.compareAll(previousFiles, currentFiles)) {
+ *     if (diff.current != null) diff.current.writeTo(outputDirectory);
+ *   }
+ * }</pre>
+ *
+ * <p>Members are named relative to the file's namespace: the type {@code Widget} has members like
+ * {@code Widget.Count}, {@code Widget.Add(int)}, {@code Widget..ctor(string)} and {@code
+ * Widget.Part}, and the nested type {@code Part} has members like {@code Widget.Part.Size}. A
+ * type's own name is reported as changed when its declaration changed, such as its modifiers,
+ * attributes, supertypes or documentation, or when its members were reordered. The top-level
+ * type's name is also reported when the rest of the file changed.
+ *
+ * <p>Subtrees are compared structurally, and those shared by both versions by identity alone, so
+ * files built from specs reused from the previous run are compared in very little time.
+ */
+public final class SpecDiff {
+    /** The relative path of the file, like {@code Foo/Bar/Baz.cs}. */
+    public final String path;
+    /** The previous version of the file, or null if it was added. */
+    public final CSharpFile previous;
+    /** The current version of the file, or null if it was removed. */
+    public final CSharpFile current;
+    public final List<String> added;
+    public final List<String> removed;
+    public final List<String> changed;
+
+    private SpecDiff(String path, CSharpFile previous, CSharpFile current, List<String> added,
+                     List<String> removed, List<String> changed) {
+        this.path = path;
+        this.previous = previous;
+        this.current = current;
+        this.added = Util.immutableList(added);
+        this.removed = Util.immutableList(removed);
+        this.changed = Util.immutableList(changed);
+    }
+
+    /**
+     * Compares two versions of a file, either of which may be null if the file was added or
+     * removed.
+     */
+    public static SpecDiff compare(CSharpFile previous, CSharpFile current) {
+        checkArgument(previous != null || current != null, "previous == null && current == null");
+        String path = current != null ? current.relativePath() : previous.relativePath();
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+
+        if (previous == null) {
+            added.add(current.typeSpec.name);
+        } else if (current == null) {
+            removed.add(previous.typeSpec.name);
+        } else if (previous != current) {
+            String name = current.typeSpec.name;
+            if (!Structure.fileHeaderEqual(previous, current)) {
+                changed.add(name);
+            }
+            compareTypes(name, previous.typeSpec, current.typeSpec, added, removed, changed,
+                    changed.contains(name));
+        }
+        return new SpecDiff(path, previous, current, added, removed, changed);
+    }
+
+    /**
+     * Compares every file of {@code previous} with the file at the same path in {@code current}, and
+     * returns the differences of those that were added, removed or changed, ordered by path.
+     */
+    public static List<SpecDiff> compareAll(Iterable<CSharpFile> previous,
+                                            Iterable<CSharpFile> current) {
+        checkNotNull(previous, "previous == null");
+        checkNotNull(current, "current == null");
+        Map<String, CSharpFile> previousByPath = byPath(previous);
+        Map<String, CSharpFile> currentByPath = byPath(current);
+        List<SpecDiff> result = new ArrayList<>();
+        for (Map.Entry<String, CSharpFile> entry: previousByPath.entrySet()) {
+            SpecDiff diff = compare(entry.getValue(), currentByPath.remove(entry.getKey()));
+            if (!diff.isUnchanged()) {
+                result.add(diff);
+            }
+        }
+        for (CSharpFile file: currentByPath.values()) {
+            result.add(compare(null, file));
+        }
+        result.sort((a, b) -> a.path.compareTo(b.path));
+        return Util.immutableList(result);
+    }
+
+    private static Map<String, CSharpFile> byPath(Iterable<CSharpFile> files) {
+        Map<String, CSharpFile> result = new TreeMap<>();
+        for (CSharpFile file: files) {
+            CSharpFile replaced = result.put(file.relativePath(), file);
+            checkArgument(replaced == null, "duplicate file %s", file.relativePath());
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if both versions of the file are structurally equal, so it doesn't need to be
+     * written again.
+     */
+    public boolean isUnchanged() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    private static void compareTypes(String name, TypeSpec previous, TypeSpec current,
+                                     List<String> added, List<String> removed, List<String> changed,
+                                     boolean declarationReported) {
+        if (previous == current) return;
+        Map<String, Object> previousMembers = members(previous);
+        Map<String, Object> currentMembers = members(current);
+        if (!declarationReported && (!Structure.declarationEqual(previous, current)
+                || reordered(previousMembers, currentMembers)
+                || collides(previousMembers) || collides(currentMembers))) {
+            changed.add(name);
+        }
+        compareMembers(name, previousMembers, currentMembers, added, removed, changed);
+    }
+
+    /**
+     * Returns true if the members that both versions have are emitted in a different order.
+     */
+    private static boolean reordered(Map<String, Object> previous, Map<String, Object> current) {
+        Iterator<String> i = previous.keySet().iterator();
+        for (String key: current.keySet()) {
+            if (!previous.containsKey(key)) continue;
+            String previousKey;
+            do {
+                previousKey = i.next();
+            } while (!current.containsKey(previousKey));
+            if (!previousKey.equals(key)) return true;
+        }
+        return false;
+    }
+
+    private static void compareMembers(String typeName, Map<String, Object> previous,
+                                       Map<String, Object> current, List<String> added,
+                                       List<String> removed, List<String> changed) {
+        for (Map.Entry<String, Object> entry: previous.entrySet()) {
+            String name = typeName + '.' + entry.getKey();
+            Object before = entry.getValue();
+            Object after = current.get(entry.getKey());
+            if (after == null) {
+                removed.add(name);
+            } else if (before instanceof TypeSpec && after instanceof TypeSpec) {
+                compareTypes(name, (TypeSpec) before, (TypeSpec) after, added, removed, changed,
+                        false);
+            } else if (!memberEqual(before, after)) {
+                changed.add(name);
+            }
+        }
+        for (String key: current.keySet()) {
+            if (!previous.containsKey(key)) {
+                added.add(typeName + '.' + key);
+            }
+        }
+    }
+
+    private static boolean memberEqual(Object a, Object b) {
+        if (a == b) return true;
+        if (a instanceof FieldSpec && b instanceof FieldSpec) {
+            return Structure.equal((FieldSpec) a, (FieldSpec) b);
+        }
+        if (a instanceof PropertySpec && b instanceof PropertySpec) {
+            return Structure.equal((PropertySpec) a, (PropertySpec) b);
+        }
+        if (a instanceof MethodSpec && b instanceof MethodSpec) {
+            return Structure.equal((MethodSpec) a, (MethodSpec) b);
+        }
+        if (a instanceof EnumMember && b instanceof EnumMember) {
+            EnumMember x = (EnumMember) a;
+            EnumMember y = (EnumMember) b;
+            return Structure.equal(x.members, x.index, y.members, y.index);
+        }
+        if (a instanceof Collision && b instanceof Collision) {
+            List<Object> x = ((Collision) a).members;
+            List<Object> y = ((Collision) b).members;
+            if (x.size() != y.size()) return false;
+            for (int i = 0; i < x.size(); i++) {
+                if (!memberEqual(x.get(i), y.get(i))) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the members of {@code type} by name, with methods and indexers named by their
+     * signature so that overloads are told apart. Members that still share a name are kept together
+     * in a {@link Collision}.
+     */
+    private static Map<String, Object> members(TypeSpec type) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, TypeSpec> constant: type.enumConstants.entrySet()) {
+            put(result, constant.getKey(), constant.getValue());
+        }
+        for (int i = 0; i < type.enumMembers.size(); i++) {
+            put(result, type.enumMembers.name(i), new EnumMember(type.enumMembers, i));
+        }
+        for (FieldSpec field: type.fieldSpecs) {
+            put(result, field.name, field);
+        }
+        for (PropertySpec property: type.propertySpecs) {
+            put(result, property.parameters.isEmpty()
+                    ? property.name
+                    : property.name + signature(property.parameters, '[', ']'), property);
+        }
+        for (MethodSpec method: type.methodSpecs) {
+            String name = method.isConstructor() ? ".ctor" : method.name;
+            if (!method.typeVariables.isEmpty()) {
+                // Generic arity is part of the signature, as in C# documentation IDs: Foo``1(T).
+                name += "``" + method.typeVariables.size();
+            }
+            put(result, name + signature(method.parameters, '(', ')'), method);
+        }
+        for (TypeSpec nested: type.typeSpecs) {
+            put(result, nested.name, nested);
+        }
+        return result;
+    }
+
+    private static void put(Map<String, Object> members, String name, Object member) {
+        Object previous = members.put(name, member);
+        if (previous == null) return;
+        Collision collision = previous instanceof Collision
+                ? (Collision) previous
+                : new Collision(previous);
+        collision.members.add(member);
+        members.put(name, collision);
+    }
+
+    /**
+     * Returns true if some members can't be told apart by name, so which of them changed can't be
+     * reported and the whole type is reported instead.
+     */
+    private static boolean collides(Map<String, Object> members) {
+        for (Object member: members.values()) {
+            if (member instanceof Collision) return true;
+        }
+        return false;
+    }
+
+    private static String signature(List<ParameterSpec> parameters, char open, char close) {
+        StringBuilder result = new StringBuilder().append(open);
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) result.append(", ");
+            ParameterSpec parameter = parameters.get(i);
+            for (CSharpModifier modifier: parameter.modifiers.isEmpty()
+                    ? parameter.modifiers
+                    : EnumSet.copyOf(parameter.modifiers)) {
+                result.append(modifier.name().toLowerCase(Locale.US)).append(' ');
+            }
+            result.append(parameter.type);
+        }
+        return result.append(close).toString();
+    }
+
+    @Override
+    public String toString() {
+        return path + " added=" + added + " removed=" + removed + " changed=" + changed;
+    }
+
+    /** An enum member, which unlike other members isn't a spec of its own. */
+    private static final class EnumMember {
+        final EnumMembers members;
+        final int index;
+
+        EnumMember(EnumMembers members, int index) {
+            this.members = members;
+            this.index = index;
+        }
+    }
+
+    /** Members of one type that have the same name even with their signatures. */
+    private static final class Collision {
+        final List<Object> members = new ArrayList<>();
+
+        Collision(Object first) {
+            members.add(first);
+        }
+    }
+}
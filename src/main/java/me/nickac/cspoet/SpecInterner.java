@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.nickac.cspoet.Util.checkState;
+
+/**
+ * Shares structurally equal code blocks, attributes and type names built by the current thread, so
+ * that a model repeating the same fragments thousands of times holds each of them once: <pre>   {@code
+ *
+ *   try (SpecInterner batch = SpecInterner.open()) {
+ *     for (Entity entity: model) {
+ *       files.add(generate(entity));
+ *     }
+ *   }
+ * }</pre>
+ *
+ * <p>While a scope is open, {@link CodeBlock.Builder#build()}, {@link AttributeSpec.Builder#build()}
+ * and the factories of {@link ClassName}, {@link ParameterizedTypeName}, {@link ArrayTypeName} and
+ * {@link NullableTypeName} return the first equal instance built in the scope instead of a new one.
+ * Specs are immutable, so sharing them is invisible, except that specs built later are also cheaper
+ * to compare and hash by the likes of {@link SpecDiff} and {@link RenderCache}, which recognize
+ * shared subtrees by identity.
+ *
+ * <p>Each scope belongs to the thread that opened it and holds on to every instance it has seen
+ * until it's closed, so scopes should match a batch, not the life of the process. Code blocks with
+ * arguments of other types than strings, numbers, type names, code blocks and arrays of numbers are
+ * never shared, as their text may change after they're built.
+ */
+public final class SpecInterner implements AutoCloseable {
+    private static final ThreadLocal<SpecInterner> CURRENT = new ThreadLocal<>();
+    /** The number of open scopes on all threads, to skip the thread local when there are none. */
+    private static final AtomicInteger OPEN = new AtomicInteger();
+    private static final Set<Class<?>> VALUE_TYPES = Util.immutableSet(Arrays.asList(
+            String.class, Integer.class, Long.class, Short.class, Byte.class, Float.class,
+            Double.class, Character.class, Boolean.class, BigInteger.class, BigDecimal.class,
+            CodeBlock.ArrayInitializer.class));
+
+    private final SpecInterner enclosing;
+    private final Thread owner = Thread.currentThread();
+    private final Map<Object, Object> canonical = new HashMap<>();
+    private int hits;
+    private boolean closed;
+
+    private SpecInterner(SpecInterner enclosing) {
+        this.enclosing = enclosing;
+    }
+
+    /**
+     * Opens a scope on the current thread, which lasts until it's closed. Scopes may be nested;
+     * the innermost one is used.
+     */
+    public static SpecInterner open() {
+        SpecInterner scope = new SpecInterner(CURRENT.get());
+        CURRENT.set(scope);
+        OPEN.incrementAndGet();
+        return scope;
+    }
+
+    /**
+     * Returns the number of distinct instances in this scope.
+     */
+    public int size() {
+        return canonical.size();
+    }
+
+    /**
+     * Returns the number of times an instance was replaced with an equal one built earlier.
+     */
+    public int hits() {
+        return hits;
+    }
+
+    /**
+     * Closes this scope, forgetting every instance in it. Must be called by the thread that opened
+     * the scope, after closing the scopes nested in it.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        checkState(Thread.currentThread() == owner, "closed by a thread that didn't open it");
+        checkState(CURRENT.get() == this, "a nested scope is still open");
+        closed = true;
+        canonical.clear();
+        OPEN.decrementAndGet();
+        if (enclosing != null) {
+            CURRENT.set(enclosing);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    static CodeBlock intern(CodeBlock block) {
+        if (OPEN.get() == 0) return block;
+        SpecInterner scope = CURRENT.get();
+        if (scope == null || !hasValueArgs(block)) return block;
+        return scope.canonical(new StructuralKey(block, Structure.hashCode(block)), block);
+    }
+
+    static AttributeSpec intern(AttributeSpec attribute) {
+        if (OPEN.get() == 0) return attribute;
+        SpecInterner scope = CURRENT.get();
+        if (scope == null) return attribute;
+        for (Map.Entry<String, List<CodeBlock>> member: attribute.members.entrySet()) {
+            for (CodeBlock value: member.getValue()) {
+                if (!hasValueArgs(value)) return attribute;
+            }
+        }
+        return scope.canonical(new StructuralKey(attribute, Structure.hashCode(attribute)), attribute);
+    }
+
+    static <T extends TypeName> T intern(T typeName) {
+        if (OPEN.get() == 0) return typeName;
+        SpecInterner scope = CURRENT.get();
+        if (scope == null) return typeName;
+        return scope.canonical(new StructuralKey(typeName, Structure.hashCode(typeName)), typeName);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T canonical(Object key, T value) {
+        Object existing = canonical.putIfAbsent(key, value);
+        if (existing == null) return value;
+        hits++;
+        return (T) existing;
+    }
+
+    private static boolean hasValueArgs(CodeBlock block) {
+        for (Object arg: block.args) {
+            if (arg == null || VALUE_TYPES.contains(arg.getClass()) || arg instanceof TypeName) {
+                continue;
+            }
+            if (arg instanceof CodeBlock && hasValueArgs((CodeBlock) arg)) continue;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Wraps a code block, attribute or type name so that it's compared structurally, rather than by
+     * rendering it like its own {@code equals()} does. Rendered type names don't tell a namespace
+     * from an enclosing class, nor show bounds and attributes.
+     */
+    private static final class StructuralKey {
+        private final Object spec;
+        private final int hashCode;
+
+        StructuralKey(Object spec, int hashCode) {
+            this.spec = spec;
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StructuralKey)) return false;
+            Object other = ((StructuralKey) o).spec;
+            if (spec instanceof CodeBlock) {
+                return other instanceof CodeBlock && Structure.equal((CodeBlock) spec, (CodeBlock) other);
+            }
+            if (spec instanceof TypeName) {
+                return other instanceof TypeName && Structure.equal((TypeName) spec, (TypeName) other);
+            }
+            return other instanceof AttributeSpec
+                    && Structure.equal((AttributeSpec) spec, (AttributeSpec) other);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
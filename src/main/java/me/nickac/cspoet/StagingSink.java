@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+import static me.nickac.cspoet.Util.checkState;
+
+/**
+ * Holds generated sources outside of the Java heap until a slower stage, like an archive or a
+ * disk, is ready for them: <pre>   {@code
+ *
+ *   try (StagingSink staging = StagingSink.builder().mappedFile(tempDirectory).build()) {
+ *     staging.writeAll(files);
+ *     staging.drainTo(zipSink);
+ *   }
+ * }</pre>
+ *
+ * <p>Files are encoded as UTF-8 into large slabs, either direct buffers or regions of a temporary
+ * file mapped into memory, so a big batch doesn't leave the garbage collector scanning gigabytes of
+ * rendered strings. The memory of replaced files isn't reused until the sink is {@linkplain
+ * #release() released}.
+ *
+ * <p>Writes may come from many threads at once, but must not overlap with {@link #drainTo}, {@link
+ * #release} or {@link #close}.
+ */
+public final class StagingSink implements SourceSink {
+    private final int slabSize;
+    private final FileChannel channel;
+    private final ConcurrentSkipListMap<String, ByteBuffer> files = new ConcurrentSkipListMap<>();
+    private ByteBuffer current;
+    private long mappedSize;
+    private long stagedSize;
+    private boolean closed;
+
+    private StagingSink(Builder builder, FileChannel channel) {
+        this.slabSize = builder.slabSize;
+        this.channel = channel;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void write(String path, ByteBuffer content) throws IOException {
+        checkNotNull(path, "path == null");
+        checkNotNull(content, "content == null");
+        ByteBuffer extent = allocate(content.remaining());
+        extent.duplicate().put(content.duplicate());
+        files.put(path, extent);
+    }
+
+    /**
+     * Renders {@code file} and encodes it straight into off-heap memory, without an intermediate
+     * byte array.
+     */
+    @Override
+    public void write(CSharpFile file) throws IOException {
+        String source = file.toString();
+        ByteBuffer extent = allocate(utf8Length(source));
+        CharsetEncoder encoder = UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE);
+        CoderResult result = encoder.encode(CharBuffer.wrap(source), extent.duplicate(), true);
+        checkState(result.isUnderflow(), "failed to encode %s: %s", file.relativePath(), result);
+        files.put(file.relativePath(), extent);
+    }
+
+    /**
+     * Returns a buffer of exactly {@code length} bytes carved from the current slab, starting a new
+     * slab if it's full. Files larger than a slab get a slab of their own.
+     */
+    private synchronized ByteBuffer allocate(int length) throws IOException {
+        checkState(!closed, "closed");
+        ByteBuffer slab;
+        if (current != null && current.remaining() >= length) {
+            slab = current;
+        } else if (length > slabSize) {
+            slab = newSlab(length);
+        } else {
+            slab = current = newSlab(slabSize);
+        }
+        ByteBuffer extent = slab.slice();
+        extent.limit(length);
+        slab.position(slab.position() + length);
+        stagedSize += length;
+        return extent;
+    }
+
+    private ByteBuffer newSlab(int size) throws IOException {
+        ByteBuffer slab;
+        if (channel != null) {
+            slab = channel.map(FileChannel.MapMode.READ_WRITE, mappedSize, size);
+            mappedSize += size;
+        } else {
+            slab = ByteBuffer.allocateDirect(size);
+        }
+        return slab;
+    }
+
+    /**
+     * Returns a read-only view of the file at {@code path}, or null if there is no such file. The
+     * view's content is undefined once the sink is released.
+     */
+    public ByteBuffer get(String path) {
+        checkNotNull(path, "path == null");
+        ByteBuffer extent = files.get(path);
+        return extent != null ? extent.asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Returns the number of files in this sink.
+     */
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * Returns the number of bytes staged since the sink was last released, including files that have
+     * since been replaced.
+     */
+    public synchronized long stagedSize() {
+        return stagedSize;
+    }
+
+    /**
+     * Writes each file to {@code sink} in path order, then {@linkplain #release() releases} them.
+     * If {@code sink} fails, the files are kept so the drain can be retried.
+     */
+    public void drainTo(SourceSink sink) throws IOException {
+        checkNotNull(sink, "sink == null");
+        for (Map.Entry<String, ByteBuffer> entry: files.entrySet()) {
+            sink.write(entry.getKey(), entry.getValue().asReadOnlyBuffer());
+        }
+        release();
+    }
+
+    /**
+     * Drops every file and the memory holding them. Direct slabs are returned to the system when
+     * they're collected. A mapped file is reused from its start rather than truncated, as views of
+     * it may still be reachable.
+     */
+    public synchronized void release() {
+        files.clear();
+        current = null;
+        stagedSize = 0;
+        mappedSize = 0;
+    }
+
+    /**
+     * Releases every file and deletes the mapped file, if any.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        release();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the UTF-8 encoding of {@code s}. Like {@link
+     * String#getBytes}, an unpaired surrogate is encoded as a single {@code ?}.
+     */
+    static int utf8Length(String s) {
+        int length = s.length();
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                length += 1;
+            } else if (!Character.isSurrogate(c)) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 2;
+                i++;
+            }
+        }
+        return length;
+    }
+
+    public static final class Builder {
+        private int slabSize = 4 * 1024 * 1024;
+        private Path directory;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the size of each slab of memory. Larger slabs waste more at the end of each one, but
+         * need fewer allocations or mappings. The default is 4 MiB.
+         */
+        public Builder slabSize(int slabSize) {
+            checkArgument(slabSize > 0, "slabSize <= 0: %s", slabSize);
+            this.slabSize = slabSize;
+            return this;
+        }
+
+        /**
+         * Stages files in a temporary file in {@code directory}, mapped into memory, rather than in
+         * direct buffers. The operating system can then page staged files out under memory pressure
+         * instead of failing the allocation. The file is deleted when the sink is closed.
+         */
+        public Builder mappedFile(Path directory) {
+            checkNotNull(directory, "directory == null");
+            this.directory = directory;
+            return this;
+        }
+
+        public StagingSink build() throws IOException {
+            FileChannel channel = null;
+            if (directory != null) {
+                Path file = Files.createTempFile(directory, "staging", ".bin");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            return new StagingSink(this, channel);
+        }
+    }
+}
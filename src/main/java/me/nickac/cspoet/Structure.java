@@ -0,0 +1,620 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares specs by their structure rather than by their rendered code. Two specs are structurally
+ * equal if they would be emitted identically in the same file; subtrees shared by both sides are
+ * recognized by identity and never walked.
+ *
+ * <p>The {@code equals()} methods of specs render both sides and compare the text, which costs as
+ * much as generating the code. Walking the structure stops at the first difference, and in the
+ * common case of an unchanged subtree reused from a previous run, doesn't walk it at all.
+ */
+final class Structure {
+    private Structure() {
+    }
+
+    static boolean equal(CSharpFile a, CSharpFile b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        return fileHeaderEqual(a, b) && equal(a.typeSpec, b.typeSpec);
+    }
+
+    /**
+     * Returns true if everything about the files but their types is equal.
+     */
+    static boolean fileHeaderEqual(CSharpFile a, CSharpFile b) {
+        return a.namespace.equals(b.namespace)
+                && a.skipJavaLangImports == b.skipJavaLangImports
+                && a.style == b.style
+                && a.columnLimit == b.columnLimit
+                && a.indent.equals(b.indent)
+                && a.staticImports.equals(b.staticImports)
+                && a.nonStaticImports.equals(b.nonStaticImports)
+                && equal(a.fileComment, b.fileComment);
+    }
+
+    static boolean equal(TypeSpec a, TypeSpec b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        return declarationEqual(a, b)
+                && equalLists(a.fieldSpecs, b.fieldSpecs)
+                && equalLists(a.propertySpecs, b.propertySpecs)
+                && equalLists(a.methodSpecs, b.methodSpecs)
+                && equalLists(a.typeSpecs, b.typeSpecs)
+                && equalMaps(a.enumConstants, b.enumConstants)
+                && equal(a.enumMembers, b.enumMembers);
+    }
+
+    /**
+     * Returns true if the types are equal, ignoring their fields, properties, methods, nested types,
+     * enum constants and enum members.
+     */
+    static boolean declarationEqual(TypeSpec a, TypeSpec b) {
+        if (a == b) return true;
+        return a.kind == b.kind
+                && Objects.equals(a.name, b.name)
+                && a.modifiers.equals(b.modifiers)
+                && equal(a.superclass, b.superclass)
+                && equalLists(a.superinterfaces, b.superinterfaces)
+                && equalLists(a.typeVariables, b.typeVariables)
+                && equalLists(a.annotations, b.annotations)
+                && equal(a.javadoc, b.javadoc)
+                && equal(a.anonymousTypeArguments, b.anonymousTypeArguments)
+                && equal(a.staticBlock, b.staticBlock)
+                && equal(a.initializerBlock, b.initializerBlock)
+                && equalLists(a.miscCodeBlocks, b.miscCodeBlocks);
+    }
+
+    static boolean equal(EnumMembers a, EnumMembers b) {
+        if (a == b) return true;
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!equal(a, i, b, i)) return false;
+        }
+        return true;
+    }
+
+    static boolean equal(EnumMembers a, int i, EnumMembers b, int j) {
+        return a.name(i).equals(b.name(j))
+                && a.hasNumericValue(i) == b.hasNumericValue(j)
+                && (!a.hasNumericValue(i) || a.numericValue(i) == b.numericValue(j))
+                && equal(a.expression(i), b.expression(j))
+                && equalLists(a.attributes(i), b.attributes(j));
+    }
+
+    static boolean equal(FieldSpec a, FieldSpec b) {
+        if (a == b) return true;
+        return a.name.equals(b.name)
+                && equal(a.type, b.type)
+                && a.modifiers.equals(b.modifiers)
+                && equalLists(a.annotations, b.annotations)
+                && equal(a.javadoc, b.javadoc)
+                && equal(a.initializer, b.initializer);
+    }
+
+    static boolean equal(PropertySpec a, PropertySpec b) {
+        if (a == b) return true;
+        return a.name.equals(b.name)
+                && equal(a.returnType, b.returnType)
+                && a.modifiers.equals(b.modifiers)
+                && equalLists(a.typeVariables, b.typeVariables)
+                && equalLists(a.parameters, b.parameters)
+                && equalLists(a.annotations, b.annotations)
+                && equal(a.javadoc, b.javadoc)
+                && equal(a.getterCode, b.getterCode)
+                && equal(a.setterCode, b.setterCode);
+    }
+
+    static boolean equal(MethodSpec a, MethodSpec b) {
+        if (a == b) return true;
+        return a.name.equals(b.name)
+                && a.varargs == b.varargs
+                && equal(a.returnType, b.returnType)
+                && Objects.equals(a.extraInfo, b.extraInfo)
+                && a.modifiers.equals(b.modifiers)
+                && equalLists(a.typeVariables, b.typeVariables)
+                && equalLists(a.exceptions, b.exceptions)
+                && equalLists(a.parameters, b.parameters)
+                && equalLists(a.annotations, b.annotations)
+                && equal(a.javadoc, b.javadoc)
+                && equal(a.code, b.code)
+                && equal(a.defaultValue, b.defaultValue);
+    }
+
+    static boolean equal(ParameterSpec a, ParameterSpec b) {
+        if (a == b) return true;
+        return a.name.equals(b.name)
+                && equal(a.type, b.type)
+                && a.modifiers.equals(b.modifiers)
+                && equalLists(a.annotations, b.annotations);
+    }
+
+    static boolean equal(AttributeSpec a, AttributeSpec b) {
+        if (a == b) return true;
+        return equal(a.type, b.type) && equalMaps(a.members, b.members);
+    }
+
+    /**
+     * Compares type names by their parts. Their {@code equals()} compares their text, which doesn't
+     * tell a namespace from an enclosing class, and leaves out the bounds of type variables.
+     */
+    static boolean equal(TypeName a, TypeName b) {
+        if (a == b) return true;
+        if (a == null || b == null || a.getClass() != b.getClass()) return false;
+        if (!equalLists(a.annotations, b.annotations)) return false;
+        if (a instanceof ClassName) {
+            ClassName x = (ClassName) a;
+            ClassName y = (ClassName) b;
+            return x.simpleName.equals(y.simpleName)
+                    && x.packageName.equals(y.packageName)
+                    && equal(x.enclosingClassName, y.enclosingClassName);
+        }
+        if (a instanceof ParameterizedTypeName) {
+            ParameterizedTypeName x = (ParameterizedTypeName) a;
+            ParameterizedTypeName y = (ParameterizedTypeName) b;
+            return equal(x.rawType, y.rawType)
+                    && equalLists(x.typeArguments, y.typeArguments)
+                    && equal(x.enclosingType, y.enclosingType);
+        }
+        if (a instanceof ArrayTypeName) {
+            return equal(((ArrayTypeName) a).componentType, ((ArrayTypeName) b).componentType);
+        }
+        if (a instanceof NullableTypeName) {
+            return equal(((NullableTypeName) a).underlyingType, ((NullableTypeName) b).underlyingType);
+        }
+        if (a instanceof TypeVariableName) {
+            TypeVariableName x = (TypeVariableName) a;
+            TypeVariableName y = (TypeVariableName) b;
+            return x.name.equals(y.name) && equalLists(x.bounds, y.bounds);
+        }
+        if (a instanceof WildcardTypeName) {
+            WildcardTypeName x = (WildcardTypeName) a;
+            WildcardTypeName y = (WildcardTypeName) b;
+            return equalLists(x.upperBounds, y.upperBounds) && equalLists(x.lowerBounds, y.lowerBounds);
+        }
+        return a.equals(b); // A keyword like int.
+    }
+
+    /**
+     * Compares code blocks by their parts, arguments and statement count, which decides whether a
+     * property accessor is written as {@code => expression} or as a block.
+     */
+    static boolean equal(CodeBlock a, CodeBlock b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        if (a.statementCount != b.statementCount) return false;
+        if (!a.formatParts.equals(b.formatParts) || a.args.size() != b.args.size()) return false;
+        for (int i = 0; i < a.args.size(); i++) {
+            if (!argEqual(a.args.get(i), b.args.get(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares two arguments of code blocks. Names and strings are values; code blocks, type names
+     * and anonymous types are compared structurally. Anything else is emitted with {@code
+     * toString()}, so that's what is compared, except for binary literals: their data may be read
+     * from files or streams when the code is written, so only the same literal is equal to itself.
+     * Lazy literals are emitted as their value, so they're compared by it.
+     */
+    private static boolean argEqual(Object a, Object b) {
+        if (a == b) return true;
+        if (a instanceof CodeBlock.LazyLiteral) a = ((CodeBlock.LazyLiteral) a).get();
+        if (b instanceof CodeBlock.LazyLiteral) b = ((CodeBlock.LazyLiteral) b).get();
+        if (a == b) return true;
+        if (a == null || b == null || a.getClass() != b.getClass()) return false;
+        if (a instanceof CodeBlock) return equal((CodeBlock) a, (CodeBlock) b);
+        if (a instanceof TypeSpec) return equal((TypeSpec) a, (TypeSpec) b);
+        if (a instanceof BinaryLiteral.Form) return false;
+        if (a instanceof TypeName) return equal((TypeName) a, (TypeName) b);
+        if (a.equals(b)) return true;
+        if (a instanceof String || a instanceof Number
+                || a instanceof CodeBlock.ArrayInitializer) {
+            return false;
+        }
+        return a.toString().equals(b.toString());
+    }
+
+    private static boolean equalLists(List<?> a, List<?> b) {
+        if (a == b) return true;
+        if (a.size() != b.size()) return false;
+        Iterator<?> i = a.iterator();
+        Iterator<?> j = b.iterator();
+        while (i.hasNext()) {
+            if (!specEqual(i.next(), j.next())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares maps in iteration order, which is the order their entries are emitted in.
+     */
+    private static boolean equalMaps(Map<String, ?> a, Map<String, ?> b) {
+        if (a == b) return true;
+        if (a.size() != b.size()) return false;
+        Iterator<? extends Map.Entry<String, ?>> i = a.entrySet().iterator();
+        Iterator<? extends Map.Entry<String, ?>> j = b.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<String, ?> x = i.next();
+            Map.Entry<String, ?> y = j.next();
+            if (!x.getKey().equals(y.getKey()) || !specEqual(x.getValue(), y.getValue())) return false;
+        }
+        return true;
+    }
+
+    private static boolean specEqual(Object a, Object b) {
+        if (a == b) return true;
+        if (a instanceof FieldSpec) return equal((FieldSpec) a, (FieldSpec) b);
+        if (a instanceof PropertySpec) return equal((PropertySpec) a, (PropertySpec) b);
+        if (a instanceof MethodSpec) return equal((MethodSpec) a, (MethodSpec) b);
+        if (a instanceof ParameterSpec) return equal((ParameterSpec) a, (ParameterSpec) b);
+        if (a instanceof AttributeSpec) return equal((AttributeSpec) a, (AttributeSpec) b);
+        if (a instanceof TypeSpec) return equal((TypeSpec) a, (TypeSpec) b);
+        if (a instanceof CodeBlock) return equal((CodeBlock) a, (CodeBlock) b);
+        if (a instanceof TypeName) return b instanceof TypeName && equal((TypeName) a, (TypeName) b);
+        if (a instanceof List && b instanceof List) return equalLists((List<?>) a, (List<?>) b);
+        return Objects.equals(a, b);
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equal(CodeBlock, CodeBlock)}.
+     */
+    static int hashCode(CodeBlock block) {
+        if (block == null) return 0;
+        int result = 31 * block.statementCount + block.formatParts.hashCode();
+        for (Object arg: block.args) {
+            result = 31 * result + argHashCode(arg);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equal(AttributeSpec, AttributeSpec)}.
+     */
+    static int hashCode(AttributeSpec attribute) {
+        int result = hashCode(attribute.type);
+        for (Map.Entry<String, List<CodeBlock>> member: attribute.members.entrySet()) {
+            result = 31 * result + member.getKey().hashCode();
+            for (CodeBlock value: member.getValue()) {
+                result = 31 * result + hashCode(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equal(TypeName, TypeName)}.
+     */
+    static int hashCode(TypeName typeName) {
+        if (typeName == null) return 0;
+        int result = typeName.hashCode();
+        if (typeName instanceof ClassName) {
+            result = 31 * result + ((ClassName) typeName).packageName.hashCode();
+        }
+        return result;
+    }
+
+    private static int argHashCode(Object arg) {
+        if (arg instanceof CodeBlock.LazyLiteral) arg = ((CodeBlock.LazyLiteral) arg).get();
+        if (arg == null) return 0;
+        if (arg instanceof CodeBlock) return hashCode((CodeBlock) arg);
+        if (arg instanceof TypeSpec) return Objects.hashCode(((TypeSpec) arg).name);
+        if (arg instanceof BinaryLiteral.Form) return System.identityHashCode(arg);
+        if (arg instanceof TypeName) return hashCode((TypeName) arg);
+        if (arg instanceof String || arg instanceof Number
+                || arg instanceof CodeBlock.ArrayInitializer) {
+            return arg.hashCode();
+        }
+        return arg.toString().hashCode();
+    }
+
+    /**
+     * Feeds the structure of {@code file} to {@code digest}, such that structurally equal files
+     * produce the same digest in any process. Returns false if the file's code depends on more than
+     * its structure, like binary literals read from files, in which case the digest is meaningless.
+     */
+    static boolean hash(CSharpFile file, MessageDigest digest) {
+        try {
+            new Hasher(digest).file(file);
+            return true;
+        } catch (Unhashable e) {
+            return false;
+        }
+    }
+
+    private static final class Unhashable extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final Unhashable INSTANCE = new Unhashable();
+
+        private Unhashable() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Writes specs to a digest field by field, in the order of {@link Structure#equal}. Strings are
+     * prefixed with their length and collections with their size, so that no two structures write
+     * the same bytes.
+     */
+    private static final class Hasher {
+        private final MessageDigest digest;
+        private final byte[] scratch = new byte[4];
+
+        Hasher(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        void file(CSharpFile file) {
+            string(file.namespace);
+            bool(file.skipJavaLangImports);
+            integer(file.style.ordinal());
+            integer(file.columnLimit);
+            string(file.indent);
+            strings(new TreeSet<>(file.staticImports));
+            strings(new TreeSet<>(file.nonStaticImports));
+            codeBlock(file.fileComment);
+            type(file.typeSpec);
+        }
+
+        void type(TypeSpec type) {
+            integer(type.kind.ordinal());
+            string(type.name);
+            modifiers(type.modifiers);
+            typeName(type.superclass);
+            typeNames(type.superinterfaces);
+            typeNames(type.typeVariables);
+            attributes(type.annotations);
+            codeBlock(type.javadoc);
+            codeBlock(type.anonymousTypeArguments);
+            codeBlock(type.staticBlock);
+            codeBlock(type.initializerBlock);
+            integer(type.miscCodeBlocks.size());
+            for (CodeBlock block: type.miscCodeBlocks) {
+                codeBlock(block);
+            }
+            integer(type.fieldSpecs.size());
+            for (FieldSpec field: type.fieldSpecs) {
+                string(field.name);
+                typeName(field.type);
+                modifiers(field.modifiers);
+                attributes(field.annotations);
+                codeBlock(field.javadoc);
+                codeBlock(field.initializer);
+            }
+            integer(type.propertySpecs.size());
+            for (PropertySpec property: type.propertySpecs) {
+                string(property.name);
+                typeName(property.returnType);
+                modifiers(property.modifiers);
+                typeNames(property.typeVariables);
+                parameters(property.parameters);
+                attributes(property.annotations);
+                codeBlock(property.javadoc);
+                codeBlock(property.getterCode);
+                codeBlock(property.setterCode);
+            }
+            integer(type.methodSpecs.size());
+            for (MethodSpec method: type.methodSpecs) {
+                string(method.name);
+                bool(method.varargs);
+                typeName(method.returnType);
+                string(method.extraInfo);
+                modifiers(method.modifiers);
+                typeNames(method.typeVariables);
+                typeNames(method.exceptions);
+                parameters(method.parameters);
+                attributes(method.annotations);
+                codeBlock(method.javadoc);
+                codeBlock(method.code);
+                codeBlock(method.defaultValue);
+            }
+            integer(type.typeSpecs.size());
+            for (TypeSpec nested: type.typeSpecs) {
+                type(nested);
+            }
+            integer(type.enumConstants.size());
+            for (Map.Entry<String, TypeSpec> constant: type.enumConstants.entrySet()) {
+                string(constant.getKey());
+                type(constant.getValue());
+            }
+            EnumMembers members = type.enumMembers;
+            integer(members.size());
+            for (int i = 0; i < members.size(); i++) {
+                string(members.name(i));
+                bool(members.hasNumericValue(i));
+                if (members.hasNumericValue(i)) {
+                    longInteger(members.numericValue(i));
+                }
+                codeBlock(members.expression(i));
+                attributes(members.attributes(i));
+            }
+        }
+
+        private void parameters(List<ParameterSpec> parameters) {
+            integer(parameters.size());
+            for (ParameterSpec parameter: parameters) {
+                string(parameter.name);
+                typeName(parameter.type);
+                modifiers(parameter.modifiers);
+                attributes(parameter.annotations);
+            }
+        }
+
+        private void attributes(List<AttributeSpec> attributes) {
+            integer(attributes.size());
+            for (AttributeSpec attribute: attributes) {
+                typeName(attribute.type);
+                integer(attribute.members.size());
+                for (Map.Entry<String, List<CodeBlock>> member: attribute.members.entrySet()) {
+                    string(member.getKey());
+                    integer(member.getValue().size());
+                    for (CodeBlock value: member.getValue()) {
+                        codeBlock(value);
+                    }
+                }
+            }
+        }
+
+        private void codeBlock(CodeBlock block) {
+            if (block == null) {
+                integer(-1);
+                return;
+            }
+            integer(block.statementCount);
+            strings(block.formatParts);
+            integer(block.args.size());
+            for (Object arg: block.args) {
+                arg(arg);
+            }
+        }
+
+        /**
+         * Writes an argument the way {@link Structure#argEqual} compares it.
+         */
+        private void arg(Object arg) {
+            if (arg instanceof CodeBlock.LazyLiteral) arg = ((CodeBlock.LazyLiteral) arg).get();
+            if (arg == null) {
+                integer(-1);
+            } else if (arg instanceof CodeBlock) {
+                integer(0);
+                codeBlock((CodeBlock) arg);
+            } else if (arg instanceof TypeSpec) {
+                integer(1);
+                type((TypeSpec) arg);
+            } else if (arg instanceof TypeName) {
+                integer(2);
+                typeName((TypeName) arg);
+            } else if (arg instanceof BinaryLiteral.Form) {
+                throw Unhashable.INSTANCE;
+            } else if (arg instanceof CodeBlock.ArrayInitializer) {
+                CodeBlock.ArrayInitializer array = (CodeBlock.ArrayInitializer) arg;
+                StringBuilder values = new StringBuilder();
+                for (int i = 0; i < array.length; i++) {
+                    array.appendValue(values, i);
+                    values.append(',');
+                }
+                integer(3);
+                string(values.toString());
+            } else {
+                integer(4);
+                string(arg.getClass().getName());
+                string(arg.toString());
+            }
+        }
+
+        private void typeNames(List<? extends TypeName> typeNames) {
+            integer(typeNames.size());
+            for (TypeName typeName: typeNames) {
+                typeName(typeName);
+            }
+        }
+
+        /**
+         * Writes a type name as its text and kind, then the parts its text leaves out or doesn't
+         * tell apart: namespaces of class names, bounds of type variables and wildcards, and
+         * attributes.
+         */
+        private void typeName(TypeName typeName) {
+            if (typeName == null) {
+                integer(-1);
+                return;
+            }
+            string(typeName.getClass().getSimpleName());
+            string(typeName.toString());
+            attributes(typeName.annotations);
+            if (typeName instanceof ClassName) {
+                ClassName className = (ClassName) typeName;
+                string(className.packageName);
+                typeName(className.enclosingClassName);
+            } else if (typeName instanceof ParameterizedTypeName) {
+                ParameterizedTypeName parameterized = (ParameterizedTypeName) typeName;
+                typeName(parameterized.enclosingType);
+                typeName(parameterized.rawType);
+                typeNames(parameterized.typeArguments);
+            } else if (typeName instanceof ArrayTypeName) {
+                typeName(((ArrayTypeName) typeName).componentType);
+            } else if (typeName instanceof NullableTypeName) {
+                typeName(((NullableTypeName) typeName).underlyingType);
+            } else if (typeName instanceof TypeVariableName) {
+                typeNames(((TypeVariableName) typeName).bounds);
+            } else if (typeName instanceof WildcardTypeName) {
+                WildcardTypeName wildcard = (WildcardTypeName) typeName;
+                typeNames(wildcard.upperBounds);
+                typeNames(wildcard.lowerBounds);
+            }
+        }
+
+        /**
+         * Writes modifiers in declaration order, as they're emitted, whatever the set's order.
+         */
+        private void modifiers(Set<CSharpModifier> modifiers) {
+            integer(modifiers.size());
+            for (CSharpModifier modifier: CSharpModifier.values()) {
+                if (modifiers.contains(modifier)) {
+                    integer(modifier.ordinal());
+                }
+            }
+        }
+
+        private void strings(Collection<String> strings) {
+            integer(strings.size());
+            for (String string: strings) {
+                string(string);
+            }
+        }
+
+        private void string(String string) {
+            if (string == null) {
+                integer(-1);
+                return;
+            }
+            byte[] bytes = string.getBytes(UTF_8);
+            integer(bytes.length);
+            digest.update(bytes);
+        }
+
+        private void bool(boolean value) {
+            digest.update((byte) (value ? 1 : 0));
+        }
+
+        private void longInteger(long value) {
+            integer((int) (value >>> 32));
+            integer((int) value);
+        }
+
+        private void integer(int value) {
+            scratch[0] = (byte) (value >>> 24);
+            scratch[1] = (byte) (value >>> 16);
+            scratch[2] = (byte) (value >>> 8);
+            scratch[3] = (byte) value;
+            digest.update(scratch);
+        }
+    }
+}
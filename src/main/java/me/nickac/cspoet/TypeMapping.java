@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+
+/**
+ * Converts Java types to their .NET counterparts, like {@code java.util.List<java.lang.String>} to
+ * {@code System.Collections.Generic.List<string>}. Classes are looked up in a table of mappings;
+ * classes without a mapping convert to the same names as {@link TypeName#get(Type)}. Type arguments
+ * and array components are mapped recursively. C# has no wildcards, so wildcard types are replaced
+ * by their bound.
+ *
+ * <p>Mappings are immutable and thread safe. Each mapping remembers the conversions it made, so
+ * reuse one mapping rather than building a new one per conversion.
+ */
+public final class TypeMapping {
+    private static final TypeMapping DEFAULTS = builder()
+            .map(void.class, TypeName.VOID)
+            .map(boolean.class, TypeName.BOOL)
+            .map(byte.class, TypeName.SBYTE)
+            .map(short.class, TypeName.SHORT)
+            .map(int.class, TypeName.INT)
+            .map(long.class, TypeName.LONG)
+            .map(char.class, TypeName.CHAR)
+            .map(float.class, TypeName.FLOAT)
+            .map(double.class, TypeName.DOUBLE)
+            .map(Boolean.class, NullableTypeName.of(TypeName.BOOL))
+            .map(Byte.class, NullableTypeName.of(TypeName.SBYTE))
+            .map(Short.class, NullableTypeName.of(TypeName.SHORT))
+            .map(Integer.class, NullableTypeName.of(TypeName.INT))
+            .map(Long.class, NullableTypeName.of(TypeName.LONG))
+            .map(Character.class, NullableTypeName.of(TypeName.CHAR))
+            .map(Float.class, NullableTypeName.of(TypeName.FLOAT))
+            .map(Double.class, NullableTypeName.of(TypeName.DOUBLE))
+            .map(Object.class, TypeName.OBJECT)
+            .map(String.class, TypeName.STRING)
+            .map(CharSequence.class, TypeName.STRING)
+            .map(BigDecimal.class, TypeName.DECIMAL)
+            .map(BigInteger.class, ClassName.get("System.Numerics", "BigInteger"))
+            .map(UUID.class, ClassName.get("System", "Guid"))
+            .map(Date.class, ClassName.get("System", "DateTime"))
+            .map(Iterable.class, ClassName.get("System.Collections.Generic", "IEnumerable"))
+            .map(Collection.class, ClassName.get("System.Collections.Generic", "ICollection"))
+            .map(List.class, ClassName.get("System.Collections.Generic", "List"))
+            .map(ArrayList.class, ClassName.get("System.Collections.Generic", "List"))
+            .map(LinkedList.class, ClassName.get("System.Collections.Generic", "LinkedList"))
+            .map(Set.class, ClassName.get("System.Collections.Generic", "HashSet"))
+            .map(HashSet.class, ClassName.get("System.Collections.Generic", "HashSet"))
+            .map(LinkedHashSet.class, ClassName.get("System.Collections.Generic", "HashSet"))
+            .map(SortedSet.class, ClassName.get("System.Collections.Generic", "SortedSet"))
+            .map(TreeSet.class, ClassName.get("System.Collections.Generic", "SortedSet"))
+            .map(Map.class, ClassName.get("System.Collections.Generic", "Dictionary"))
+            .map(HashMap.class, ClassName.get("System.Collections.Generic", "Dictionary"))
+            .map(LinkedHashMap.class, ClassName.get("System.Collections.Generic", "Dictionary"))
+            .map(SortedMap.class, ClassName.get("System.Collections.Generic", "SortedDictionary"))
+            .map(TreeMap.class, ClassName.get("System.Collections.Generic", "SortedDictionary"))
+            .map(Queue.class, ClassName.get("System.Collections.Generic", "Queue"))
+            .map(ArrayDeque.class, ClassName.get("System.Collections.Generic", "Queue"))
+            .build();
+
+    private final Map<Class<?>, TypeName> classes;
+    private final ClassValue<TypeName> classTypeNames = new ClassValue<TypeName>() {
+        @Override
+        protected TypeName computeValue(Class<?> type) {
+            TypeName mapped = classes.get(type);
+            if (mapped != null) return mapped;
+            if (type.isArray()) return ArrayTypeName.of(get(type.getComponentType()));
+            return TypeName.get(type);
+        }
+    };
+    /**
+     * Conversions of parameterized and generic array types, by name. Type variables convert to
+     * their name alone, so types of the same name convert alike, unless they name different classes
+     * of the same name from different class loaders.
+     */
+    private final BoundedCache<String, TypeName> genericTypeNames = new BoundedCache<>(4096);
+
+    private TypeMapping(Builder builder) {
+        this.classes = Collections.unmodifiableMap(new HashMap<>(builder.classes));
+    }
+
+    /**
+     * Returns a mapping of Java's primitives, boxed primitives, strings, common collections and a few
+     * value types like {@link UUID} to their .NET equivalents. Boxed primitives map to nullable
+     * value types like {@code int?}.
+     */
+    public static TypeMapping defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a builder for a mapping without any entries.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the .NET type name for {@code type}.
+     */
+    public TypeName get(Type type) {
+        checkNotNull(type, "type == null");
+        if (type instanceof Class<?>) {
+            return classTypeNames.get((Class<?>) type);
+        }
+        if (type instanceof ParameterizedType || type instanceof GenericArrayType) {
+            return genericTypeNames.computeIfAbsent(type.getTypeName(),
+                    name -> convert(type, Collections.emptyMap()));
+        }
+        return convert(type, Collections.emptyMap());
+    }
+
+    /**
+     * Returns the .NET type name for {@code type}, looking up classes in {@code overlay} before this
+     * mapping. Conversions that involve classes of the overlay aren't remembered, so this mapping's
+     * conversions stay shared by every overlay.
+     */
+    TypeName get(Type type, Map<Class<?>, TypeName> overlay) {
+        if (overlay.isEmpty() || !mentions(type, overlay)) return get(type);
+        if (type instanceof Class<?>) {
+            Class<?> c = (Class<?>) type;
+            return c.isArray() ? ArrayTypeName.of(get(c.getComponentType(), overlay)) : overlay.get(c);
+        }
+        return convert(type, overlay);
+    }
+
+    /**
+     * Returns true if converting {@code type} looks up a class of {@code overlay}.
+     */
+    private static boolean mentions(Type type, Map<Class<?>, TypeName> overlay) {
+        if (type instanceof Class<?>) {
+            Class<?> c = (Class<?>) type;
+            while (c.isArray()) {
+                c = c.getComponentType();
+            }
+            return overlay.containsKey(c);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            if (mentions(parameterizedType.getRawType(), overlay)) return true;
+            for (Type typeArgument: parameterizedType.getActualTypeArguments()) {
+                if (mentions(typeArgument, overlay)) return true;
+            }
+            return false;
+        }
+        if (type instanceof GenericArrayType) {
+            return mentions(((GenericArrayType) type).getGenericComponentType(), overlay);
+        }
+        if (type instanceof WildcardType) {
+            WildcardType wildcardType = (WildcardType) type;
+            for (Type bound: wildcardType.getLowerBounds()) {
+                if (mentions(bound, overlay)) return true;
+            }
+            for (Type bound: wildcardType.getUpperBounds()) {
+                if (mentions(bound, overlay)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if {@code type} is mapped explicitly, rather than converted by {@link
+     * TypeName#get(Type)}.
+     */
+    boolean contains(Class<?> type) {
+        return classes.containsKey(type);
+    }
+
+    private TypeName convert(Type type, Map<Class<?>, TypeName> overlay) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            TypeName rawType = get(parameterizedType.getRawType(), overlay);
+            if (!(rawType instanceof ClassName)) {
+                return rawType; // Mapped to a keyword, which takes no type arguments.
+            }
+            Type[] typeArguments = parameterizedType.getActualTypeArguments();
+            TypeName[] mappedArguments = new TypeName[typeArguments.length];
+            for (int i = 0; i < typeArguments.length; i++) {
+                mappedArguments[i] = get(typeArguments[i], overlay);
+            }
+            return ParameterizedTypeName.get((ClassName) rawType, mappedArguments);
+
+        } else if (type instanceof GenericArrayType) {
+            return ArrayTypeName.of(get(((GenericArrayType) type).getGenericComponentType(), overlay));
+
+        } else if (type instanceof WildcardType) {
+            WildcardType wildcardType = (WildcardType) type;
+            Type[] lowerBounds = wildcardType.getLowerBounds();
+            Type bound = lowerBounds.length == 1 ? lowerBounds[0] : wildcardType.getUpperBounds()[0];
+            return get(bound, overlay);
+
+        } else if (type instanceof TypeVariable<?>) {
+            return TypeVariableName.get(((TypeVariable<?>) type).getName());
+
+        } else {
+            throw new IllegalArgumentException("unexpected type: " + type);
+        }
+    }
+
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.classes.putAll(classes);
+        return builder;
+    }
+
+    public static final class Builder {
+        private final Map<Class<?>, TypeName> classes = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Maps {@code javaType} to {@code type}, replacing any previous mapping. If {@code javaType}
+         * is generic, {@code type} should be the raw {@link ClassName} of a type that accepts the
+         * same type arguments.
+         */
+        public Builder map(Class<?> javaType, TypeName type) {
+            checkNotNull(javaType, "javaType == null");
+            checkNotNull(type, "type == null");
+            checkArgument(!(type instanceof ParameterizedTypeName),
+                    "%s must not have type arguments", type);
+            classes.put(javaType, type);
+            return this;
+        }
+
+        public TypeMapping build() {
+            return new TypeMapping(this);
+        }
+    }
+}
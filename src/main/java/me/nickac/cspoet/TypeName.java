@@ -63,6 +63,16 @@ public class TypeName {
     public static final TypeName CHAR = new TypeName("char");
     public static final TypeName FLOAT = new TypeName("float");
     public static final TypeName DOUBLE = new TypeName("double");
+    public static final TypeName BOOL = new TypeName("bool");
+    public static final TypeName SBYTE = new TypeName("sbyte");
+    public static final TypeName USHORT = new TypeName("ushort");
+    public static final TypeName UINT = new TypeName("uint");
+    public static final TypeName ULONG = new TypeName("ulong");
+    public static final TypeName DECIMAL = new TypeName("decimal");
+    /**
+     * The {@code string} keyword. Unlike the other keyword types, this is a reference type.
+     */
+    public static final TypeName STRING = new TypeName("string");
     public static final ClassName OBJECT = ClassName.get("System", "Object");
 
     private static final ClassName BOXED_VOID = ClassName.get("System", "Void");
@@ -74,6 +84,41 @@ public class TypeName {
     private static final ClassName BOXED_CHAR = ClassName.get("System", "Char");
     private static final ClassName BOXED_FLOAT = ClassName.get("System", "Single");
     private static final ClassName BOXED_DOUBLE = ClassName.get("System", "Double");
+    private static final ClassName BOXED_SBYTE = ClassName.get("System", "SByte");
+    private static final ClassName BOXED_USHORT = ClassName.get("System", "UInt16");
+    private static final ClassName BOXED_UINT = ClassName.get("System", "UInt32");
+    private static final ClassName BOXED_ULONG = ClassName.get("System", "UInt64");
+    private static final ClassName BOXED_DECIMAL = ClassName.get("System", "Decimal");
+
+    /**
+     * Type names of classes. These don't depend on any type variables in scope, so they can be
+     * computed once per class.
+     */
+    private static final ClassValue<TypeName> CLASS_TYPE_NAMES = new ClassValue<TypeName>() {
+        @Override
+        protected TypeName computeValue(Class<?> type) {
+            if (type == void.class) return VOID;
+            if (type == boolean.class) return BOOLEAN;
+            if (type == byte.class) return BYTE;
+            if (type == short.class) return SHORT;
+            if (type == int.class) return INT;
+            if (type == long.class) return LONG;
+            if (type == char.class) return CHAR;
+            if (type == float.class) return FLOAT;
+            if (type == double.class) return DOUBLE;
+            if (type.isArray()) return ArrayTypeName.of(get(type.getComponentType()));
+            return ClassName.get(type);
+        }
+    };
+
+    /**
+     * Type names of parameterized and generic array types, by {@link #cacheKey}. Unlike classes
+     * these can't be attached to a {@link ClassValue}, and reflection returns a new instance of the
+     * same type from each copy of a field or method, so they're keyed by name. Names don't keep
+     * class loaders alive, as a type like {@code List<Foo>} would.
+     */
+    private static final BoundedCache<String, TypeName> GENERIC_TYPE_NAMES =
+            new BoundedCache<>(4096);
     public final List<AttributeSpec> annotations;
     /**
      * The name of this type if it is a keyword, or null.
@@ -85,7 +130,7 @@ public class TypeName {
     private String cachedString;
 
     private TypeName(String keyword) {
-        this(keyword, new ArrayList<>());
+        this(keyword, Collections.emptyList());
     }
 
     private TypeName(String keyword, List<AttributeSpec> annotations) {
@@ -98,6 +143,19 @@ public class TypeName {
         this(null, annotations);
     }
 
+    /**
+     * Returns the type name for a C# type expression like {@code int}, {@code
+     * System.Collections.Generic.List<string>}, {@code byte[]} or {@code int?}. Namespaces may be
+     * in any case: everything before the last dot is the namespace. Nested types are separated with
+     * {@code +}, as in {@code System.Environment+SpecialFolder}.
+     *
+     * <p>Parsed expressions are cached, so parsing the same expression repeatedly usually returns
+     * the same instance.
+     */
+    public static TypeName parse(String expression) {
+        return TypeNameParser.parse(expression);
+    }
+
     /**
      * Returns a type name equivalent to {@code mirror}.
      */
@@ -105,6 +163,13 @@ public class TypeName {
         return get(mirror, new LinkedHashMap<>());
     }
 
+    /**
+     * Returns a type name equivalent to {@code mirror}, memoized in {@code context}.
+     */
+    public static TypeName get(TypeMirror mirror, ConversionContext context) {
+        return context.typeName(mirror);
+    }
+
     static TypeName get(TypeMirror mirror,
                         final Map<TypeParameterElement, TypeVariableName> typeVariables) {
         return mirror.accept(new SimpleTypeVisitor8<TypeName, Void>() {
@@ -192,23 +257,55 @@ public class TypeName {
      * Returns a type name equivalent to {@code type}.
      */
     public static TypeName get(Type type) {
+        if (type instanceof Class<?>) {
+            return CLASS_TYPE_NAMES.get((Class<?>) type);
+        }
+        if (type instanceof ParameterizedType || type instanceof GenericArrayType) {
+            return GENERIC_TYPE_NAMES.computeIfAbsent(cacheKey(type),
+                    key -> get(type, new LinkedHashMap<>()));
+        }
         return get(type, new LinkedHashMap<>());
     }
 
+    /**
+     * Returns the name of {@code type}, followed by the declaration of each type variable it
+     * mentions. Type variables are converted with their bounds, which their declaration decides
+     * but their name doesn't show.
+     */
+    private static String cacheKey(Type type) {
+        StringBuilder key = new StringBuilder(type.getTypeName());
+        appendDeclarations(type, key);
+        return key.toString();
+    }
+
+    private static void appendDeclarations(Type type, StringBuilder key) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            if (parameterizedType.getOwnerType() != null) {
+                appendDeclarations(parameterizedType.getOwnerType(), key);
+            }
+            for (Type typeArgument: parameterizedType.getActualTypeArguments()) {
+                appendDeclarations(typeArgument, key);
+            }
+        } else if (type instanceof GenericArrayType) {
+            appendDeclarations(((GenericArrayType) type).getGenericComponentType(), key);
+        } else if (type instanceof WildcardType) {
+            for (Type bound: ((WildcardType) type).getUpperBounds()) {
+                appendDeclarations(bound, key);
+            }
+            for (Type bound: ((WildcardType) type).getLowerBounds()) {
+                appendDeclarations(bound, key);
+            }
+        } else if (type instanceof TypeVariable<?>) {
+            TypeVariable<?> typeVariable = (TypeVariable<?>) type;
+            key.append(' ').append(typeVariable.getName()).append(" in ")
+                    .append(typeVariable.getGenericDeclaration());
+        }
+    }
+
     static TypeName get(Type type, Map<Type, TypeVariableName> map) {
         if (type instanceof Class<?>) {
-            Class<?> classType = (Class<?>) type;
-            if (type == void.class) return VOID;
-            if (type == boolean.class) return BOOLEAN;
-            if (type == byte.class) return BYTE;
-            if (type == short.class) return SHORT;
-            if (type == int.class) return INT;
-            if (type == long.class) return LONG;
-            if (type == char.class) return CHAR;
-            if (type == float.class) return FLOAT;
-            if (type == double.class) return DOUBLE;
-            if (classType.isArray()) return ArrayTypeName.of(get(classType.getComponentType(), map));
-            return ClassName.get(classType);
+            return CLASS_TYPE_NAMES.get((Class<?>) type);
 
         } else if (type instanceof ParameterizedType) {
             return ParameterizedTypeName.get((ParameterizedType) type, map);
@@ -285,10 +382,10 @@ public class TypeName {
 
     /**
      * Returns true if this is a primitive type like {@code int}. Returns false for all other types
-     * types including boxed primitives and {@code void}.
+     * types including boxed primitives, {@code string} and {@code void}.
      */
     public boolean isPrimitive() {
-        return keyword != null && this != VOID;
+        return keyword != null && this != VOID && this != STRING;
     }
 
     /**
@@ -303,7 +400,12 @@ public class TypeName {
                 || this.equals(BOXED_LONG)
                 || this.equals(BOXED_CHAR)
                 || this.equals(BOXED_FLOAT)
-                || this.equals(BOXED_DOUBLE);
+                || this.equals(BOXED_DOUBLE)
+                || this.equals(BOXED_SBYTE)
+                || this.equals(BOXED_USHORT)
+                || this.equals(BOXED_UINT)
+                || this.equals(BOXED_ULONG)
+                || this.equals(BOXED_DECIMAL);
     }
 
     /**
@@ -311,7 +413,7 @@ public class TypeName {
      * {@code void}. Returns this type if boxing doesn't apply.
      */
     public TypeName box() {
-        if (keyword == null) return this; // Doesn't need boxing.
+        if (keyword == null || this == STRING) return this; // Doesn't need boxing.
         if (this == VOID) return BOXED_VOID;
         if (this == BOOLEAN) return BOXED_BOOLEAN;
         if (this == BYTE) return BOXED_BYTE;
@@ -321,6 +423,12 @@ public class TypeName {
         if (this == CHAR) return BOXED_CHAR;
         if (this == FLOAT) return BOXED_FLOAT;
         if (this == DOUBLE) return BOXED_DOUBLE;
+        if (this == BOOL) return BOXED_BOOLEAN;
+        if (this == SBYTE) return BOXED_SBYTE;
+        if (this == USHORT) return BOXED_USHORT;
+        if (this == UINT) return BOXED_UINT;
+        if (this == ULONG) return BOXED_ULONG;
+        if (this == DECIMAL) return BOXED_DECIMAL;
         throw new AssertionError(keyword);
     }
 
@@ -341,6 +449,11 @@ public class TypeName {
         if (this.equals(BOXED_CHAR)) return CHAR;
         if (this.equals(BOXED_FLOAT)) return FLOAT;
         if (this.equals(BOXED_DOUBLE)) return DOUBLE;
+        if (this.equals(BOXED_SBYTE)) return SBYTE;
+        if (this.equals(BOXED_USHORT)) return USHORT;
+        if (this.equals(BOXED_UINT)) return UINT;
+        if (this.equals(BOXED_ULONG)) return ULONG;
+        if (this.equals(BOXED_DECIMAL)) return DECIMAL;
         throw new UnsupportedOperationException("cannot unbox " + this);
     }
 
@@ -361,15 +474,8 @@ public class TypeName {
     public final String toString() {
         String result = cachedString;
         if (result == null) {
-            try {
-                StringBuilder resultBuilder = new StringBuilder();
-                CodeWriter codeWriter = new CodeWriter(resultBuilder);
-                emit(codeWriter);
-                result = resultBuilder.toString();
-                cachedString = result;
-            } catch (IOException e) {
-                throw new AssertionError();
-            }
+            result = RenderContext.toString(this::emit);
+            cachedString = result;
         }
         return result;
     }
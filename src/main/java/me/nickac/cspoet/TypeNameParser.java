@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses C# type expressions like {@code System.Collections.Generic.Dictionary<string, int?[]>}.
+ * See {@link TypeName#parse}.
+ */
+final class TypeNameParser {
+    private static final Map<String, TypeName> KEYWORDS = new HashMap<>();
+
+    static {
+        KEYWORDS.put("bool", TypeName.BOOL);
+        KEYWORDS.put("byte", TypeName.BYTE);
+        KEYWORDS.put("sbyte", TypeName.SBYTE);
+        KEYWORDS.put("short", TypeName.SHORT);
+        KEYWORDS.put("ushort", TypeName.USHORT);
+        KEYWORDS.put("int", TypeName.INT);
+        KEYWORDS.put("uint", TypeName.UINT);
+        KEYWORDS.put("long", TypeName.LONG);
+        KEYWORDS.put("ulong", TypeName.ULONG);
+        KEYWORDS.put("char", TypeName.CHAR);
+        KEYWORDS.put("float", TypeName.FLOAT);
+        KEYWORDS.put("double", TypeName.DOUBLE);
+        KEYWORDS.put("decimal", TypeName.DECIMAL);
+        KEYWORDS.put("string", TypeName.STRING);
+        KEYWORDS.put("object", TypeName.OBJECT);
+        KEYWORDS.put("void", TypeName.VOID);
+    }
+
+    /**
+     * Parsed expressions. Equal expressions yield the same instance while they remain cached.
+     */
+    private static final BoundedCache<String, TypeName> EXPRESSIONS = new BoundedCache<>(4096);
+
+    /**
+     * Class names by their namespace and simple names, so that class names are shared across
+     * expressions like {@code List<int>} and {@code List<string>}.
+     */
+    private static final BoundedCache<String, ClassName> CLASS_NAMES = new BoundedCache<>(4096);
+
+    private final String input;
+    private int pos;
+
+    private TypeNameParser(String input) {
+        this.input = input;
+    }
+
+    static TypeName parse(String expression) {
+        Util.checkNotNull(expression, "expression == null");
+        return EXPRESSIONS.computeIfAbsent(expression, e -> new TypeNameParser(e).parseExpression());
+    }
+
+    private TypeName parseExpression() {
+        TypeName type = parseType();
+        skipWhitespace();
+        if (pos < input.length()) throw fail("unexpected '" + input.charAt(pos) + "'");
+        return type;
+    }
+
+    private TypeName parseType() {
+        TypeName type = parseElementType();
+        while (true) {
+            skipWhitespace();
+            if (consume('?')) {
+                type = NullableTypeName.of(type);
+            } else if (consume('[')) {
+                skipWhitespace();
+                if (pos < input.length() && input.charAt(pos) == ',') {
+                    throw fail("multi-dimensional arrays are not supported");
+                }
+                expect(']');
+                type = ArrayTypeName.of(type);
+            } else {
+                return type;
+            }
+        }
+    }
+
+    private TypeName parseElementType() {
+        skipWhitespace();
+        if (input.startsWith("global::", pos)) {
+            pos += "global::".length();
+        }
+        String identifier = identifier();
+        TypeName keyword = KEYWORDS.get(identifier);
+        if (keyword != null) return keyword;
+
+        // Everything before the last dot is the namespace. Nested types follow a '+'.
+        List<String> names = new ArrayList<>();
+        names.add(identifier);
+        int namespaceNames = 0;
+        while (true) {
+            skipWhitespace();
+            if (namespaceNames == names.size() - 1 && consume('.')) {
+                namespaceNames++;
+                names.add(identifier());
+            } else if (consume('+')) {
+                names.add(identifier());
+            } else {
+                break;
+            }
+        }
+        ClassName className = className(names, namespaceNames);
+
+        skipWhitespace();
+        if (!consume('<')) return className;
+        List<TypeName> typeArguments = new ArrayList<>();
+        do {
+            typeArguments.add(parseType());
+            skipWhitespace();
+        } while (consume(','));
+        expect('>');
+        return ParameterizedTypeName.get(className, typeArguments.toArray(new TypeName[0]));
+    }
+
+    private static ClassName className(List<String> names, int namespaceNames) {
+        String namespace = String.join(".", names.subList(0, namespaceNames));
+        List<String> simpleNames = names.subList(namespaceNames, names.size());
+        String key = namespace + ":" + String.join("+", simpleNames);
+        return CLASS_NAMES.computeIfAbsent(key, k -> ClassName.get(namespace, simpleNames.get(0),
+                simpleNames.subList(1, simpleNames.size()).toArray(new String[0])));
+    }
+
+    private String identifier() {
+        skipWhitespace();
+        int start = pos;
+        if (pos < input.length() && input.charAt(pos) == '@') pos++; // Verbatim identifier.
+        if (pos == input.length() || !isIdentifierStart(input.charAt(pos))) {
+            throw fail("expected an identifier");
+        }
+        pos++;
+        while (pos < input.length() && isIdentifierPart(input.charAt(pos))) {
+            pos++;
+        }
+        return input.substring(start, pos);
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private void skipWhitespace() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean consume(char c) {
+        if (pos < input.length() && input.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (!consume(c)) throw fail("expected '" + c + "'");
+    }
+
+    private IllegalArgumentException fail(String message) {
+        return new IllegalArgumentException(String.format(
+                "invalid type expression '%s': %s at %s", input, message, pos));
+    }
+}
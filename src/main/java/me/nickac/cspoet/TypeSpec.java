@@ -27,22 +27,6 @@ import static me.nickac.cspoet.Util.checkState;
  * A generated class, interface, or enum declaration.
  */
 public final class TypeSpec {
-    private static final Appendable NULL_APPENDABLE = new Appendable() {
-        @Override
-        public Appendable append(CharSequence charSequence) {
-            return this;
-        }
-
-        @Override
-        public Appendable append(CharSequence charSequence, int start, int end) {
-            return this;
-        }
-
-        @Override
-        public Appendable append(char c) {
-            return this;
-        }
-    };
     public final Kind kind;
     public final String name;
     public final CodeBlock anonymousTypeArguments;
@@ -53,6 +37,7 @@ public final class TypeSpec {
     public final TypeName superclass;
     public final List<TypeName> superinterfaces;
     public final Map<String, TypeSpec> enumConstants;
+    public final EnumMembers enumMembers;
     public final List<FieldSpec> fieldSpecs;
     public final CodeBlock staticBlock;
     public final CodeBlock initializerBlock;
@@ -73,6 +58,7 @@ public final class TypeSpec {
         this.superclass = builder.superclass;
         this.superinterfaces = Util.immutableList(builder.superinterfaces);
         this.enumConstants = Util.immutableMap(builder.enumConstants);
+        this.enumMembers = builder.enumMembers.build();
         this.fieldSpecs = Util.immutableList(builder.fieldSpecs);
         this.staticBlock = builder.staticBlock.build();
         this.initializerBlock = builder.initializerBlock.build();
@@ -105,6 +91,7 @@ public final class TypeSpec {
         this.superclass = null;
         this.superinterfaces = Collections.emptyList();
         this.enumConstants = Collections.emptyMap();
+        this.enumMembers = EnumMembers.EMPTY;
         this.fieldSpecs = Collections.emptyList();
         this.staticBlock = type.staticBlock;
         this.initializerBlock = type.initializerBlock;
@@ -170,6 +157,7 @@ public final class TypeSpec {
         builder.superclass = superclass;
         builder.superinterfaces.addAll(superinterfaces);
         builder.enumConstants.putAll(enumConstants);
+        builder.enumMembers.addAll(enumMembers);
         builder.fieldSpecs.addAll(fieldSpecs);
         builder.propertySpecs.addAll(propertySpecs);
         builder.methodSpecs.addAll(methodSpecs);
@@ -192,7 +180,7 @@ public final class TypeSpec {
             if (enumName != null && !enumName.isEmpty()) {
                 codeWriter.emitJavadoc(javadoc);
                 codeWriter.emitAnnotations(annotations, false);
-                codeWriter.emit("$L", enumName);
+                codeWriter.emit(enumName);
                 if (!anonymousTypeArguments.formatParts.isEmpty()) {
                     codeWriter.emit("(");
                     codeWriter.emit(anonymousTypeArguments);
@@ -204,7 +192,7 @@ public final class TypeSpec {
                 codeWriter.emit(" {\n");
             } else if (anonymousTypeArguments != null) {
                 TypeName supertype = !superinterfaces.isEmpty() ? superinterfaces.get(0) : superclass;
-                codeWriter.emit("new $T(", supertype);
+                codeWriter.emit("new ").emitType(supertype).emit("(");
                 codeWriter.emit(anonymousTypeArguments);
                 codeWriter.emit(") {\n");
             } else {
@@ -215,9 +203,9 @@ public final class TypeSpec {
                 codeWriter.emitAnnotations(annotations, false);
                 codeWriter.emitModifiers(modifiers, Util.union(implicitModifiers, kind.asMemberModifiers));
                 if (kind == Kind.ANNOTATION) {
-                    codeWriter.emit("$L $L", "@interface", name);
+                    codeWriter.emit("@interface ").emit(name);
                 } else {
-                    codeWriter.emit("$L $L", kind.name().toLowerCase(Locale.US), name);
+                    codeWriter.emit(kind.keyword).emit(" ").emit(name);
                 }
                 codeWriter.emitTypeVariables(typeVariables);
 
@@ -243,7 +231,7 @@ public final class TypeSpec {
                     boolean firstType = true;
                     for (TypeName type: extendsTypes) {
                         if (!firstType) codeWriter.emit(", ");
-                        codeWriter.emit(" $T", type);
+                        codeWriter.emit(" ").emitType(type);
                         firstType = false;
                     }
                 }
@@ -256,7 +244,7 @@ public final class TypeSpec {
                     boolean firstType = true;
                     for (TypeName type: implementsTypes) {
                         if (!firstType) codeWriter.emit(", ");
-                        codeWriter.emit(" $T", type);
+                        codeWriter.emit(" ").emitType(type);
                         firstType = false;
                     }
                 }
@@ -284,6 +272,12 @@ public final class TypeSpec {
                 }
             }
 
+            if (!enumMembers.isEmpty()) {
+                if (!firstMember) codeWriter.emit("\n");
+                enumMembers.emit(codeWriter);
+                firstMember = false;
+            }
+
             // Static fields.
             for (FieldSpec fieldSpec: fieldSpecs) {
                 if (!fieldSpec.hasModifier(CSharpModifier.STATIC)) continue;
@@ -354,13 +348,8 @@ public final class TypeSpec {
     }
 
     public String[] getUsings() {
-        CodeWriter importsCollector = new CodeWriter(NULL_APPENDABLE, "", Collections.emptySet(), Collections.emptySet());
-        try {
-            emit(importsCollector, "", Collections.singleton(CSharpModifier.PRIVATE));
-        } catch (IOException e) {
-            return new String[0];
-        }
-        Map<String, ClassName> suggestedImports = importsCollector.suggestedImports();
+        Map<String, ClassName> suggestedImports = RenderContext.suggestedImports(
+                codeWriter -> emit(codeWriter, "", Collections.singleton(CSharpModifier.PRIVATE)));
         return suggestedImports.entrySet().stream().map(c -> String.format("%s", c.getValue().packageName())).toArray(String[]::new);
     }
 
@@ -379,14 +368,7 @@ public final class TypeSpec {
 
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        try {
-            CodeWriter codeWriter = new CodeWriter(out);
-            emit(codeWriter, null, Collections.emptySet());
-            return out.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
-        }
+        return RenderContext.toString(codeWriter -> emit(codeWriter, null, Collections.emptySet()));
     }
 
     public enum Kind {
@@ -418,6 +400,7 @@ public final class TypeSpec {
         private final Set<CSharpModifier> implicitMethodModifiers;
         private final Set<CSharpModifier> implicitTypeModifiers;
         private final Set<CSharpModifier> asMemberModifiers;
+        private final String keyword;
 
         Kind(Set<CSharpModifier> implicitFieldModifiers,
              Set<CSharpModifier> implicitMethodModifiers,
@@ -427,10 +410,13 @@ public final class TypeSpec {
             this.implicitMethodModifiers = implicitMethodModifiers;
             this.implicitTypeModifiers = implicitTypeModifiers;
             this.asMemberModifiers = asMemberModifiers;
+            this.keyword = name().toLowerCase(Locale.US);
         }
     }
 
     public static final class Builder {
+        private static final AttributeSpec[] NO_ATTRIBUTES = new AttributeSpec[0];
+
         private final Kind kind;
         private final String name;
         private final CodeBlock anonymousTypeArguments;
@@ -441,6 +427,7 @@ public final class TypeSpec {
         private final List<TypeVariableName> typeVariables = new ArrayList<>();
         private final List<TypeName> superinterfaces = new ArrayList<>();
         private final Map<String, TypeSpec> enumConstants = new LinkedHashMap<>();
+        private final EnumMembers.Builder enumMembers = new EnumMembers.Builder();
         private final List<FieldSpec> fieldSpecs = new ArrayList<>();
         private final CodeBlock.Builder staticBlock = CodeBlock.builder();
         private final CodeBlock.Builder initializerBlock = CodeBlock.builder();
@@ -552,6 +539,7 @@ public final class TypeSpec {
 
         public Builder addEnumConstant(String name, TypeSpec typeSpec) {
             checkState(kind == Kind.ENUM, "%s is not enum", this.name);
+            checkState(enumMembers.isEmpty(), "%s already has enum members", this.name);
             checkArgument(typeSpec.anonymousTypeArguments != null,
                     "enum constants must have anonymous type arguments");
             //checkArgument(SourceVersion.isName(name), "not a valid enum constant: %s", name);
@@ -559,6 +547,39 @@ public final class TypeSpec {
             return this;
         }
 
+        /**
+         * Adds a C# enum member whose value is one more than the previous member's, or zero if it's
+         * the first one. Unlike {@link #addEnumConstant(String)}, members don't have a type spec each,
+         * so enums with tens of thousands of them stay small and are quick to emit.
+         */
+        public Builder addEnumMember(String name) {
+            return addEnumMember(name, false, 0, null, NO_ATTRIBUTES);
+        }
+
+        /**
+         * Adds a C# enum member with a numeric value, like {@code NotFound = 404}.
+         */
+        public Builder addEnumMember(String name, long value, AttributeSpec... attributes) {
+            return addEnumMember(name, true, value, null, attributes);
+        }
+
+        /**
+         * Adds a C# enum member whose value is {@code value}, like {@code ReadWrite = Read | Write},
+         * or implicit if {@code value} is null.
+         */
+        public Builder addEnumMember(String name, CodeBlock value, AttributeSpec... attributes) {
+            return addEnumMember(name, false, 0, value, attributes);
+        }
+
+        private Builder addEnumMember(String name, boolean hasValue, long value, CodeBlock expression,
+                                      AttributeSpec[] attributes) {
+            checkState(kind == Kind.ENUM, "%s is not enum", this.name);
+            checkState(enumConstants.isEmpty(), "%s already has enum constants", this.name);
+            checkArgument(attributes != null, "attributes == null");
+            enumMembers.add(name, hasValue, value, expression, attributes);
+            return this;
+        }
+
         public Builder addFields(Iterable<FieldSpec> fieldSpecs) {
             checkArgument(fieldSpecs != null, "fieldSpecs == null");
             for (FieldSpec fieldSpec: fieldSpecs) {
@@ -670,8 +691,8 @@ public final class TypeSpec {
         }
 
         public TypeSpec build() {
-            checkArgument(kind != Kind.ENUM || !enumConstants.isEmpty(),
-                    "at least one enum constant is required for %s", name);
+            checkArgument(kind != Kind.ENUM || !enumConstants.isEmpty() || !enumMembers.isEmpty(),
+                    "at least one enum constant or member is required for %s", name);
 
             boolean isAbstract = modifiers.contains(CSharpModifier.ABSTRACT) || kind != Kind.CLASS;
             for (MethodSpec methodSpec: methodSpecs) {
@@ -15,6 +15,7 @@
  */
 package me.nickac.cspoet;
 
+import java.math.BigDecimal;
 import java.util.*;
 
 import static java.lang.Character.isISOControl;
@@ -24,10 +25,13 @@ import static java.lang.Character.isISOControl;
  * bring their own version of Guava.
  */
 final class Util {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     private Util() {
     }
 
     static <K, V> Map<K, List<V>> immutableMultimap(Map<K, List<V>> multimap) {
+        if (multimap.isEmpty()) return Collections.emptyMap();
         LinkedHashMap<K, List<V>> result = new LinkedHashMap<>();
         for (Map.Entry<K, List<V>> entry: multimap.entrySet()) {
             if (entry.getValue().isEmpty()) continue;
@@ -37,6 +41,7 @@ final class Util {
     }
 
     static <K, V> Map<K, V> immutableMap(Map<K, V> map) {
+        if (map.isEmpty()) return Collections.emptyMap();
         return Collections.unmodifiableMap(new LinkedHashMap<>(map));
     }
 
@@ -53,12 +58,35 @@ final class Util {
         if (!condition) throw new IllegalStateException(String.format(format, args));
     }
 
+    /**
+     * Returns an immutable copy of {@code collection}, or {@code collection} itself if it's already
+     * immutable. Specs hold many lists that are empty or very short, so empty lists are shared and
+     * others are backed by an array of exactly their size, with no wrapper.
+     */
+    @SuppressWarnings("unchecked")
     static <T> List<T> immutableList(Collection<T> collection) {
-        return Collections.unmodifiableList(new ArrayList<>(collection));
+        if (collection instanceof ArrayBackedList || collection == Collections.EMPTY_LIST) {
+            return (List<T>) collection;
+        }
+        switch (collection.size()) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.singletonList(collection.iterator().next());
+            default:
+                return new ArrayBackedList<>(collection.toArray());
+        }
     }
 
     static <T> Set<T> immutableSet(Collection<T> set) {
-        return Collections.unmodifiableSet(new LinkedHashSet<>(set));
+        switch (set.size()) {
+            case 0:
+                return Collections.emptySet();
+            case 1:
+                return Collections.singleton(set.iterator().next());
+            default:
+                return Collections.unmodifiableSet(new LinkedHashSet<>(set));
+        }
     }
 
     static <T> Set<T> union(Set<T> a, Set<T> b) {
@@ -111,31 +139,208 @@ final class Util {
     }
 
     /**
-     * Returns the string literal representing {@code value}, including wrapping double quotes.
+     * Returns the string literal representing {@code value}, including its delimiters. The value is
+     * scanned once to pick the form of the literal:
+     *
+     * <ul>
+     * <li>Values spanning several lines are emitted as raw string literals, with the opening and
+     * closing delimiters on lines of their own and the lines of the value unchanged in between. The
+     * delimiters are one quote longer than the longest run of quotes in the value, and at least three.
+     * Since every line takes the indentation of the surrounding code, C# strips it again.
+     * <li>Values on a single line with more backslashes than quotes, like paths and regular
+     * expressions, are emitted as verbatim literals like {@code @"C:\Temp"}.
+     * <li>Everything else is emitted as a regular literal. So are values with control characters
+     * other than tabs and newlines, which only regular literals can represent.
+     * </ul>
+     *
+     * <p>Unescaped runs of the value are copied in bulk, and a literal never has to be split into a
+     * concatenation.
      */
-    static String stringLiteralWithDoubleQuotes(String value, String indent) {
-        StringBuilder result = new StringBuilder(value.length() + 2);
-        result.append('"');
+    static String stringLiteralWithDoubleQuotes(String value) {
+        return stringLiteralWithDoubleQuotes(value, true);
+    }
+
+    /**
+     * Returns the string literal representing {@code value}. Multi-line values are emitted as
+     * regular literals unless {@code allowRaw} is true.
+     */
+    static String stringLiteralWithDoubleQuotes(String value, boolean allowRaw) {
+        int lines = 1;
+        int quotes = 0;
+        int backslashes = 0;
+        int quoteRun = 0;
+        int longestQuoteRun = 0;
+        boolean controlCharacters = false;
+        boolean blankLine = false; // A line of only whitespace, which raw literals would trim.
+        boolean lineBlank = true;
+        int lineLength = 0;
         for (int i = 0; i < value.length(); i++) {
             char c = value.charAt(i);
-            // trivial case: single quote must not be escaped
-            if (c == '\'') {
-                result.append("'");
-                continue;
+            if (c == '"') {
+                quotes++;
+                longestQuoteRun = Math.max(longestQuoteRun, ++quoteRun);
+            } else {
+                quoteRun = 0;
             }
-            // trivial case: double quotes must be escaped
-            if (c == '\"') {
-                result.append("\\\"");
+            if (c == '\n') {
+                lines++;
+                blankLine |= lineBlank && lineLength > 0;
+                lineBlank = true;
+                lineLength = 0;
                 continue;
             }
-            // default case: just let character literal do its work
-            result.append(characterLiteralWithoutSingleQuotes(c));
-            // need to append indent after linefeed?
-            if (c == '\n' && i + 1 < value.length()) {
-                result.append("\"\n").append(indent).append(indent).append("+ \"");
+            lineLength++;
+            if (c == '\\') {
+                backslashes++;
+            } else if (c != '\t' && (isISOControl(c) || isLineSeparator(c))) {
+                controlCharacters = true;
+            }
+            if (c != ' ' && c != '\t') {
+                lineBlank = false;
             }
         }
+        blankLine |= lineBlank && lineLength > 0;
+
+        if (lines > 1 && allowRaw && !controlCharacters && !blankLine) {
+            return rawStringLiteral(value, Math.max(3, longestQuoteRun + 1));
+        }
+        if (lines == 1 && !controlCharacters && backslashes > quotes) {
+            return verbatimStringLiteral(value, quotes);
+        }
+        return regularStringLiteral(value, quotes + backslashes);
+    }
+
+    private static String rawStringLiteral(String value, int quotes) {
+        StringBuilder result = new StringBuilder(value.length() + 2 * quotes + 2);
+        appendQuotes(result, quotes).append('\n');
+        result.append(value);
+        return appendQuotes(result.append('\n'), quotes).toString();
+    }
+
+    private static StringBuilder appendQuotes(StringBuilder out, int count) {
+        for (int i = 0; i < count; i++) {
+            out.append('"');
+        }
+        return out;
+    }
+
+    private static String verbatimStringLiteral(String value, int quotes) {
+        StringBuilder result = new StringBuilder(value.length() + quotes + 3);
+        result.append("@\"");
+        int start = 0;
+        for (int i = value.indexOf('"'); i != -1; i = value.indexOf('"', i + 1)) {
+            result.append(value, start, i + 1).append('"');
+            start = i + 1;
+        }
+        return result.append(value, start, value.length()).append('"').toString();
+    }
+
+    private static String regularStringLiteral(String value, int escapes) {
+        StringBuilder result = new StringBuilder(value.length() + escapes + 2);
         result.append('"');
-        return result.toString();
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '"' && c != '\\' && !isISOControl(c) && !isLineSeparator(c)) continue;
+
+            result.append(value, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                default:
+                    result.append("\\u")
+                            .append(HEX_DIGITS[c >> 12])
+                            .append(HEX_DIGITS[(c >> 8) & 0xf])
+                            .append(HEX_DIGITS[(c >> 4) & 0xf])
+                            .append(HEX_DIGITS[c & 0xf]);
+                    break;
+            }
+        }
+        return result.append(value, start, value.length()).append('"').toString();
+    }
+
+    /**
+     * Returns true if C# ends a line at {@code c}, though Java doesn't consider it a control
+     * character.
+     */
+    private static boolean isLineSeparator(char c) {
+        return c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Appends the C# literal for {@code value}. The {@code L} suffix keeps values that fit in an
+     * {@code int} typed as {@code long}.
+     */
+    static StringBuilder appendLiteral(StringBuilder out, long value) {
+        return out.append(value).append('L');
+    }
+
+    /**
+     * Appends the C# literal for {@code value}. C# has no literals for NaN and the infinities, so
+     * those are emitted as the constants of {@code float}.
+     */
+    static StringBuilder appendLiteral(StringBuilder out, float value) {
+        if (Float.isNaN(value)) return out.append("float.NaN");
+        if (Float.isInfinite(value)) {
+            return out.append(value > 0 ? "float.PositiveInfinity" : "float.NegativeInfinity");
+        }
+        return out.append(value).append('f');
+    }
+
+    /**
+     * Appends the C# literal for {@code value}. C# has no literals for NaN and the infinities, so
+     * those are emitted as the constants of {@code double}.
+     */
+    static StringBuilder appendLiteral(StringBuilder out, double value) {
+        if (Double.isNaN(value)) return out.append("double.NaN");
+        if (Double.isInfinite(value)) {
+            return out.append(value > 0 ? "double.PositiveInfinity" : "double.NegativeInfinity");
+        }
+        return out.append(value);
+    }
+
+    static StringBuilder appendLiteral(StringBuilder out, BigDecimal value) {
+        return out.append(value.toPlainString()).append('m');
+    }
+
+    /**
+     * An immutable list over an array that nothing else references.
+     */
+    private static final class ArrayBackedList<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] elements;
+
+        ArrayBackedList(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T get(int index) {
+            return (T) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return elements.clone();
+        }
     }
 }
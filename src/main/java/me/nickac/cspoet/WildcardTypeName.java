@@ -29,7 +29,7 @@ public final class WildcardTypeName extends TypeName {
     public final List<TypeName> lowerBounds;
 
     private WildcardTypeName(List<TypeName> upperBounds, List<TypeName> lowerBounds) {
-        this(upperBounds, lowerBounds, new ArrayList<>());
+        this(upperBounds, lowerBounds, Collections.emptyList());
     }
 
     private WildcardTypeName(List<TypeName> upperBounds, List<TypeName> lowerBounds,
@@ -119,10 +119,10 @@ public final class WildcardTypeName extends TypeName {
     @Override
     CodeWriter emit(CodeWriter out) throws IOException {
         if (lowerBounds.size() == 1) {
-            return out.emit("? super $T", lowerBounds.get(0));
+            return out.emit("? super ").emitType(lowerBounds.get(0));
         }
         return upperBounds.get(0).equals(OBJECT)
                 ? out.emit("?")
-                : out.emit("? extends $T", upperBounds.get(0));
+                : out.emit("? extends ").emitType(upperBounds.get(0));
     }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static me.nickac.cspoet.Util.checkArgument;
+import static me.nickac.cspoet.Util.checkNotNull;
+import static me.nickac.cspoet.Util.checkState;
+
+/**
+ * Writes generated sources straight into a zip archive, one entry per file, without staging them
+ * on disk first: <pre>   {@code
+ *
+ *   try (ZipSink sink = ZipSink.builder(Paths.get("generated.zip")).build()) {
+ *     sink.writeAll(files);
+ *   }
+ * }</pre>
+ *
+ * <p>Entries are written one at a time, but files may be rendered by many threads at once. Files
+ * are rendered and, for stored entries, checksummed before the archive is locked, so only the copy
+ * into the archive is serialized.
+ */
+public final class ZipSink implements SourceSink {
+    private final ZipOutputStream zip;
+    private final boolean stored;
+    private boolean closed;
+
+    private ZipSink(Builder builder, OutputStream out) {
+        this.zip = new ZipOutputStream(out);
+        this.stored = builder.stored;
+        if (!stored) {
+            zip.setLevel(builder.level);
+        }
+    }
+
+    /**
+     * Returns a builder for a sink that creates or replaces {@code archive}.
+     */
+    public static Builder builder(Path archive) {
+        checkNotNull(archive, "archive == null");
+        return new Builder(archive, null);
+    }
+
+    /**
+     * Returns a builder for a sink that writes an archive to {@code out}. Closing the sink closes
+     * {@code out}.
+     */
+    public static Builder builder(OutputStream out) {
+        checkNotNull(out, "out == null");
+        return new Builder(null, out);
+    }
+
+    @Override
+    public void write(String path, ByteBuffer content) throws IOException {
+        checkNotNull(path, "path == null");
+        checkNotNull(content, "content == null");
+        ByteBuffer bytes = content;
+        if (!bytes.hasArray()) {
+            byte[] copy = new byte[bytes.remaining()];
+            bytes.duplicate().get(copy);
+            bytes = ByteBuffer.wrap(copy);
+        }
+        byte[] array = bytes.array();
+        int offset = bytes.arrayOffset() + bytes.position();
+        int length = bytes.remaining();
+
+        ZipEntry entry = new ZipEntry(path);
+        if (stored) {
+            // Stored entries must declare their size and checksum up front.
+            CRC32 crc = new CRC32();
+            crc.update(array, offset, length);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(length);
+            entry.setCompressedSize(length);
+            entry.setCrc(crc.getValue());
+        }
+
+        synchronized (zip) {
+            checkState(!closed, "closed");
+            zip.putNextEntry(entry);
+            zip.write(array, offset, length);
+            zip.closeEntry();
+        }
+    }
+
+    /**
+     * Finishes the archive and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (zip) {
+            if (closed) return;
+            closed = true;
+            zip.close();
+        }
+    }
+
+    public static final class Builder {
+        private final Path archive;
+        private final OutputStream out;
+        private int level = Deflater.DEFAULT_COMPRESSION;
+        private boolean stored;
+
+        private Builder(Path archive, OutputStream out) {
+            this.archive = archive;
+            this.out = out;
+        }
+
+        /**
+         * Sets the compression level of deflated entries, from 0 (fastest) to 9 (smallest), or
+         * {@link Deflater#DEFAULT_COMPRESSION}.
+         */
+        public Builder level(int level) {
+            checkArgument(level >= 0 && level <= 9 || level == Deflater.DEFAULT_COMPRESSION,
+                    "invalid compression level: %s", level);
+            this.level = level;
+            this.stored = false;
+            return this;
+        }
+
+        /**
+         * Stores entries without compressing them. This is the fastest way to write an archive,
+         * at the cost of its size.
+         */
+        public Builder stored() {
+            this.stored = true;
+            return this;
+        }
+
+        /**
+         * Returns a sink for the configured archive, creating the archive's file if it has one.
+         */
+        public ZipSink build() throws IOException {
+            return new ZipSink(this, archive != null
+                    ? new BufferedOutputStream(Files.newOutputStream(archive))
+                    : out);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public final class AttributeSpecTest {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Column {
+        String name();
+
+        boolean nullable() default true;
+
+        int[] sizes() default {};
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Hidden {
+        String value() default "hidden";
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Rate {
+        float value();
+
+        long max();
+    }
+
+    @Rate(value = 1.5f, max = 7)
+    private static final class Limited {
+    }
+
+    @Column(name = "updated_at", nullable = false, sizes = {1, 2})
+    @Hidden
+    private static final class Annotated {
+    }
+
+    @Column(name = "created_at")
+    private static final class Defaults {
+    }
+
+    @Test
+    public void reflectedAnnotationOmitsDefaults() {
+        Column annotated = Annotated.class.getAnnotation(Column.class);
+        Column defaults = Defaults.class.getAnnotation(Column.class);
+
+        assertThat(AttributeSpec.get(annotated).toString()).isEqualTo(
+                "[me.nickac.cspoet.AttributeSpecTest.Column(name = \"updated_at\", "
+                        + "nullable = false, sizes = {1, 2})]");
+        assertThat(AttributeSpec.get(defaults).toString())
+                .isEqualTo("[me.nickac.cspoet.AttributeSpecTest.Column(name = \"created_at\")]");
+        assertThat(AttributeSpec.get(defaults, true).toString()).isEqualTo(
+                "[me.nickac.cspoet.AttributeSpecTest.Column(name = \"created_at\", nullable = true)]");
+    }
+
+    @Test
+    public void reflectedAnnotationOfNonPublicType() {
+        Hidden hidden = Annotated.class.getAnnotation(Hidden.class);
+
+        assertThat(AttributeSpec.get(hidden, true).toString())
+                .isEqualTo("[me.nickac.cspoet.AttributeSpecTest.Hidden(\"hidden\")]");
+        assertThat(AttributeSpec.get(hidden)).isEqualTo(AttributeSpec.get(hidden));
+    }
+
+    @Test
+    public void reflectedNumericMembers() {
+        Rate rate = Limited.class.getAnnotation(Rate.class);
+
+        assertThat(AttributeSpec.get(rate).toString())
+                .isEqualTo("[me.nickac.cspoet.AttributeSpecTest.Rate(max = 7, value = 1.5f)]");
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class BinaryLiteralTest {
+    @Test
+    public void byteArrayFromBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(24);
+        for (int i = 0; i < 24; i++) {
+            buffer.put((byte) (i * 15));
+        }
+        buffer.position(4);
+        CodeBlock block = CodeBlock.builder()
+                .addStatement("byte[] data = $L", BinaryLiteral.of(buffer).byteArray())
+                .build();
+
+        assertThat(block.toString()).isEqualTo(""
+                + "byte[] data = new byte[] {\n"
+                + "\t0x3c, 0x4b, 0x5a, 0x69, 0x78, 0x87, 0x96, 0xa5, 0xb4, 0xc3, 0xd2, 0xe1, 0xf0, 0xff, 0x0e, 0x1d,\n"
+                + "\t0x2c, 0x3b, 0x4a, 0x59\n"
+                + "};\n");
+        assertThat(buffer.position()).isEqualTo(4);
+        assertThat(BinaryLiteral.of(ByteBuffer.allocate(0)).byteArray().toString())
+                .isEqualTo("new byte[] { }");
+    }
+
+    @Test
+    public void spanPropertyReadsSourceOncePerWrite() {
+        AtomicInteger opened = new AtomicInteger();
+        BinaryLiteral literal = BinaryLiteral.of(() -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(new byte[] {1, 2, 3});
+        });
+        TypeSpec type = TypeSpec.classBuilder("Tables")
+                .addProperty(literal.spanProperty("Data", CSharpModifier.PRIVATE))
+                .build();
+
+        assertThat(CSharpFile.builder("Generated", type).build().toString()).isEqualTo(""
+                + "using System;\n"
+                + "\n"
+                + "namespace Generated {\n"
+                + "\tclass Tables {\n"
+                + "\t\tprivate static ReadOnlySpan<byte> Data => new byte[] {\n"
+                + "\t\t\t0x01, 0x02, 0x03\n"
+                + "\t\t};\n"
+                + "\t}\n"
+                + "}");
+        assertThat(opened.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void utf8LiteralFromFile() throws Exception {
+        Path file = Files.createTempFile("binary", ".bin");
+        try {
+            Files.write(file, "say \"h\u00e9llo\"\n\t\\ \u2028".getBytes(UTF_8));
+            assertThat(BinaryLiteral.of(file).utf8().toString())
+                    .isEqualTo("\"say \\\"h\u00e9llo\\\"\\n\\t\\\\ \\u2028\"u8");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void utf8LiteralDecodesAcrossReads() {
+        String text = "\u00e9\u20ac\ud83d\ude00";
+        BinaryLiteral literal = BinaryLiteral.of(() -> new OneByteAtATime(text.getBytes(UTF_8)));
+        assertThat(literal.utf8().toString()).isEqualTo("\"" + text + "\"u8");
+    }
+
+    @Test
+    public void utf8LiteralRejectsInvalidData() {
+        CodeBlock block = BinaryLiteral.of(ByteBuffer.wrap(new byte[] {'a', (byte) 0xc3})).utf8();
+        try {
+            block.toString();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage()).isEqualTo("data is not valid UTF-8");
+        }
+    }
+
+    private static final class OneByteAtATime extends InputStream {
+        private final ByteArrayInputStream in;
+
+        OneByteAtATime(byte[] bytes) {
+            this.in = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -242,4 +242,65 @@ public final class CSharpFileTest {
         System.out.println(ClassName.get("Lol", "PluginMessageListener.Aaaa").toString());
         assertThat(clazz.getUsings()).isEqualTo(new String[]{"Lol", "2Lol"});
     }
+
+    @Test
+    public void compactStyle() {
+        TypeSpec type = TypeSpec.classBuilder("Queries")
+                .addJavadoc("Generated queries.\n")
+                .addModifiers(CSharpModifier.PUBLIC)
+                .addField(FieldSpec.builder(ClassName.get("System", "Random"), "random")
+                        .addModifiers(CSharpModifier.PRIVATE)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("Select")
+                        .addJavadoc("Returns the query.\n")
+                        .addModifiers(CSharpModifier.PUBLIC)
+                        .returns(TypeName.STRING)
+                        .addStatement("return $S", "SELECT *\nFROM t")
+                        .build())
+                .build();
+        CSharpFile.Builder builder = CSharpFile.builder("Generated", type)
+                .addFileComment("Do not edit.");
+
+        assertThat(builder.style(CSharpFile.Style.COMPACT).build().toString()).isEqualTo(""
+                + "using System;\n"
+                + "namespace Generated;\n"
+                + "public class Queries {\n"
+                + "private Random random;\n"
+                + "public string Select() {\n"
+                + "return \"SELECT *\\nFROM t\";\n"
+                + "}\n"
+                + "}\n");
+        assertThat(builder.style(CSharpFile.Style.READABLE).build().toString()).contains(""
+                + "namespace Generated {\n"
+                + "\t/**\n"
+                + "\t * Generated queries.\n");
+    }
+
+    @Test
+    public void columnLimit() {
+        MethodSpec.Builder method = MethodSpec.methodBuilder("Sum")
+                .addModifiers(CSharpModifier.PUBLIC)
+                .returns(TypeName.INT)
+                .addStatement("return first +$Wsecond +$Wthird");
+        for (String name: new String[] {"first", "second", "third"}) {
+            method.addParameter(TypeName.INT, name);
+        }
+        TypeSpec type = TypeSpec.classBuilder("Math").addMethod(method.build()).build();
+        CSharpFile.Builder builder = CSharpFile.builder("", type);
+
+        assertThat(builder.columnLimit(30).build().toString()).isEqualTo(""
+                + "class Math {\n"
+                + "\tpublic int Sum(int first,\n"
+                + "\t\t\tint second, int third) {\n"
+                + "\t\treturn first + second +\n"
+                + "\t\t\t\tthird;\n"
+                + "\t}\n"
+                + "}\n");
+        assertThat(builder.columnLimit(0).build().toString()).isEqualTo(""
+                + "class Math {\n"
+                + "\tpublic int Sum(int first, int second, int third) {\n"
+                + "\t\treturn first + second + third;\n"
+                + "\t}\n"
+                + "}\n");
+    }
 }
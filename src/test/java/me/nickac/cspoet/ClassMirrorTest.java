@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class ClassMirrorTest {
+    public enum Genre {
+        DRAMA, COMEDY
+    }
+
+    public static class Entity {
+        public final long id = 0;
+    }
+
+    public static class Movie extends Entity {
+        public byte rating;
+        public transient Object cache;
+
+        public String getTitle() {
+            return null;
+        }
+
+        public void setTitle(String title) {
+        }
+
+        public boolean isReleased() {
+            return false;
+        }
+
+        public Map<String, List<Integer>> getCast() {
+            return null;
+        }
+
+        public Genre[] getGenres() {
+            return null;
+        }
+    }
+
+    public static class Ranking<T extends Comparable<T>> {
+        public T best;
+    }
+
+    public static class Shelf {
+        public List<Genre> genres;
+    }
+
+    public static class First {
+        public static class Inner {
+        }
+    }
+
+    public static class Second {
+        public static class Inner {
+        }
+    }
+
+    @Test
+    public void mirrorClass() {
+        TypeSpec movie = ClassMirror.builder().build().mirror(Movie.class);
+
+        assertThat(movie.toString()).isEqualTo(""
+                + "public class Movie : me.nickac.cspoet.ClassMirrorTest.Entity {\n"
+                + "\tpublic sbyte rating;\n"
+                + "\n"
+                + "\tpublic System.Collections.Generic.Dictionary<string, "
+                + "System.Collections.Generic.List<int?>> Cast {\n"
+                + "\t\tget; \n"
+                + "\t}\n"
+                + "\n"
+                + "\tpublic me.nickac.cspoet.ClassMirrorTest.Genre[] Genres {\n"
+                + "\t\tget; \n"
+                + "\t}\n"
+                + "\n"
+                + "\tpublic bool Released {\n"
+                + "\t\tget; \n"
+                + "\t}\n"
+                + "\n"
+                + "\tpublic string Title {\n"
+                + "\t\tget; set; \n"
+                + "\t}\n"
+                + "}\n");
+    }
+
+    @Test
+    public void mirrorEnumAndReadonlyField() {
+        ClassMirror mirror = ClassMirror.builder().build();
+
+        assertThat(mirror.mirror(Entity.class).toString()).contains("\tpublic readonly long id;\n");
+        assertThat(mirror.mirror(Genre.class).toString()).isEqualTo(""
+                + "public enum Genre {\n"
+                + "\tDRAMA,\n"
+                + "\n"
+                + "\tCOMEDY\n"
+                + "}\n");
+    }
+
+    @Test
+    public void customMappingAndNamespaces() {
+        TypeMapping mapping = TypeMapping.defaults().toBuilder()
+                .map(Entity.class, ClassName.get("Models", "EntityBase"))
+                .build();
+        ClassMirror mirror = ClassMirror.builder()
+                .typeMapping(mapping)
+                .namespaces(type -> "Models")
+                .build();
+
+        CSharpFile file = mirror.mirrorFiles(Arrays.asList(Movie.class)).get(0);
+        assertThat(file.toString()).contains("namespace Models {\n\tpublic class Movie : EntityBase {\n");
+    }
+
+    @Test
+    public void referencesBetweenMirroredClasses() {
+        ClassMirror mirror = ClassMirror.builder().namespaces(type -> "Models").build();
+
+        CSharpFile movie = mirror.mirrorFiles(Arrays.asList(Movie.class, Entity.class, Genre.class))
+                .get(0);
+        assertThat(movie.toString()).doesNotContain("me.nickac");
+        assertThat(movie.toString()).contains("namespace Models {\n\tpublic class Movie : Entity {\n");
+        assertThat(movie.toString()).contains("\tpublic Genre[] Genres {\n");
+    }
+
+    @Test
+    public void mirroredClassesLeaveTheMappingUnchanged() throws NoSuchFieldException {
+        TypeMapping mapping = TypeMapping.defaults();
+        ClassMirror mirror = ClassMirror.builder().typeMapping(mapping).namespaces(type -> "Models")
+                .build();
+        TypeSpec shelf = mirror.mirrorAll(Arrays.asList(Shelf.class, Genre.class)).get(0);
+        assertThat(shelf.toString()).contains("public System.Collections.Generic.List<Models.Genre> genres;");
+
+        TypeName genres = mapping.get(Shelf.class.getField("genres").getGenericType());
+        assertThat(genres.toString()).isEqualTo(
+                "System.Collections.Generic.List<me.nickac.cspoet.ClassMirrorTest.Genre>");
+    }
+
+    @Test
+    public void rejectsClassesMirroredAsTheSameType() {
+        ClassMirror mirror = ClassMirror.builder().namespaces(type -> "Models").build();
+        try {
+            mirror.mirrorFiles(Arrays.asList(First.Inner.class, Second.Inner.class));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage()).isEqualTo(First.Inner.class.getName() + " and "
+                    + Second.Inner.class.getName() + " are both mirrored as Models.Inner");
+        }
+        assertThat(mirror.mirrorAll(Arrays.asList(First.Inner.class, First.Inner.class)))
+                .hasSize(2);
+    }
+
+    @Test
+    public void mirrorTypeVariableBounds() {
+        TypeSpec ranking = ClassMirror.builder().build().mirror(Ranking.class);
+        TypeVariableName t = ranking.typeVariables.get(0);
+        assertThat(t.name).isEqualTo("T");
+        assertThat(t.bounds).containsExactly(ParameterizedTypeName.get(
+                ClassName.get(Comparable.class), TypeVariableName.get("T")));
+    }
+
+    @Test
+    public void parallelMirroringKeepsOrder() {
+        List<Class<?>> types = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            types.add(i % 2 == 0 ? Movie.class : Entity.class);
+        }
+        ClassMirror sequential = ClassMirror.builder().build();
+        ClassMirror parallel = ClassMirror.builder().parallel(true).build();
+
+        assertThat(parallel.mirrorAll(types)).isEqualTo(sequential.mirrorAll(types));
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class CodeBlockTest {
+
+    @Test
+    public void lazyLiteralIsComputedOnceAcrossBothPasses() {
+        AtomicInteger calls = new AtomicInteger();
+        CodeBlock body = CodeBlock.lazy(() -> {
+            calls.incrementAndGet();
+            return CodeBlock.of("return new $T()", ClassName.get("Lol", "RemoteObject"));
+        });
+        TypeSpec type = TypeSpec.classBuilder("Factory")
+                .addMethod(MethodSpec.methodBuilder("Create")
+                        .returns(ClassName.get("Lol", "RemoteObject"))
+                        .addStatement(body)
+                        .build())
+                .build();
+        CSharpFile file = CSharpFile.builder("Example", type).build();
+
+        assertThat(calls.get()).isEqualTo(0);
+        assertThat(file.toString()).isEqualTo(""
+                + "using Lol;\n"
+                + "\n"
+                + "namespace Example {\n"
+                + "\tclass Factory {\n"
+                + "\t\tRemoteObject Create() {\n"
+                + "\t\t\treturn new RemoteObject();\n"
+                + "\t\t}\n"
+                + "\t}\n"
+                + "}");
+        assertThat(file.toString()).contains("return new RemoteObject();");
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void lazyLiteralIsNotComputedUntilEmitted() {
+        AtomicInteger calls = new AtomicInteger();
+        CodeBlock unused = CodeBlock.lazy(() -> {
+            calls.incrementAndGet();
+            return "unused";
+        });
+        CodeBlock used = CodeBlock.of("int a = $L;", CodeBlock.lazy(() -> 42));
+
+        assertThat(unused.isEmpty()).isFalse();
+        assertThat(used.toString()).isEqualTo("int a = 42;");
+        assertThat(calls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void addReferencesBlockWithoutCopying() {
+        CodeBlock statements = CodeBlock.builder()
+                .addStatement("int a = $L", 1)
+                .addStatement("int b = $L", 2)
+                .build();
+        CodeBlock combined = CodeBlock.builder()
+                .add(statements)
+                .add(CodeBlock.builder().build())
+                .add(statements)
+                .build();
+
+        assertThat(combined.toString()).isEqualTo("int a = 1;\nint b = 2;\nint a = 1;\nint b = 2;\n");
+        assertThat(combined.args.get(0)).isSameAs(statements);
+        assertThat(combined.args.get(1)).isSameAs(statements);
+    }
+
+    @Test
+    public void joinManyBlocks() {
+        List<CodeBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            blocks.add(CodeBlock.of("$L", i));
+        }
+        String joined = CodeBlock.join(blocks, ", ").toString();
+
+        assertThat(joined.startsWith("0, 1, 2, ")).isTrue();
+        assertThat(joined.endsWith(", 99998, 99999")).isTrue();
+    }
+
+    @Test
+    public void deeplyNestedBlocksDoNotOverflow() {
+        CodeBlock spliced = CodeBlock.of("x");
+        CodeBlock literal = CodeBlock.of("x");
+        for (int i = 0; i < 50_000; i++) {
+            spliced = CodeBlock.builder().add("(").add(spliced).add(")").build();
+            literal = CodeBlock.of("($L)", literal);
+        }
+
+        assertThat(spliced.toString()).hasLength(100_001);
+        assertThat(literal.toString()).isEqualTo(spliced.toString());
+    }
+
+    @Test
+    public void staticImportLooksIntoSplicedBlocks() {
+        ClassName math = ClassName.get("System", "Math");
+        CodeBlock body = CodeBlock.builder()
+                .add("return $T", math)
+                .add(CodeBlock.of(".Max(a, b)"))
+                .build();
+        TypeSpec type = TypeSpec.classBuilder("Util")
+                .addMethod(MethodSpec.methodBuilder("Larger")
+                        .returns(TypeName.INT)
+                        .addStatement(body)
+                        .build())
+                .build();
+        CSharpFile file = CSharpFile.builder("Example", type)
+                .addStaticUsing(math, "Max")
+                .build();
+
+        assertThat(file.toString()).contains("\t\t\treturn Max(a, b);\n");
+    }
+
+    @Test
+    public void parallelJoiningKeepsEncounterOrder() {
+        String expected = IntStream.range(0, 10_000)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(",\n", "{\n", "\n}"));
+        CodeBlock joined = IntStream.range(0, 10_000)
+                .parallel()
+                .mapToObj(i -> CodeBlock.of("$L", i))
+                .collect(CodeBlock.joining(",\n", "{\n", "\n}"));
+
+        assertThat(joined.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    public void joiningAppliesPrefixAndSuffixOnce() {
+        CodeBlock empty = IntStream.range(0, 0)
+                .parallel()
+                .mapToObj(i -> CodeBlock.of("$L", i))
+                .collect(CodeBlock.joining(", ", "(", ")"));
+        CodeBlock single = IntStream.range(0, 1)
+                .mapToObj(i -> CodeBlock.of("$L", i))
+                .collect(CodeBlock.joining(", ", "(", ")"));
+
+        assertThat(empty.toString()).isEqualTo("()");
+        assertThat(single.toString()).isEqualTo("(0)");
+    }
+
+    @Test
+    public void templateMatchesAddNamed() {
+        String format = "if ($name:N == null) throw new $exception:T(nameof($name:N));\n";
+        ClassName exception = ClassName.get("System", "ArgumentNullException");
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        arguments.put("name", "value");
+        arguments.put("exception", exception);
+
+        CodeBlock.Template template = CodeBlock.template(format);
+        CodeBlock expected = CodeBlock.builder().addNamed(format, arguments).build();
+
+        assertThat(template.slots()).containsExactly("name", "exception");
+        assertThat(template.bind(arguments)).isEqualTo(expected);
+        assertThat(template.bind("value", exception)).isEqualTo(expected);
+        assertThat(expected.toString())
+                .isEqualTo("if (value == null) throw new System.ArgumentNullException(nameof(value));\n");
+    }
+
+    @Test
+    public void templateBindingsShareFormatParts() {
+        CodeBlock.Template template = CodeBlock.template("return $field:N;\n");
+        CodeBlock first = template.bind("_x");
+        CodeBlock second = template.bind("_y");
+
+        assertThat(first.toString()).isEqualTo("return _x;\n");
+        assertThat(second.toString()).isEqualTo("return _y;\n");
+        assertThat(first.formatParts).isSameAs(template.formatParts);
+        assertThat(second.formatParts).isSameAs(first.formatParts);
+    }
+
+    @Test
+    public void templateBindingsAreInterned() {
+        CodeBlock.Template template = CodeBlock.template("return $field:N;\n");
+        try (SpecInterner ignored = SpecInterner.open()) {
+            CodeBlock bound = template.bind("_x");
+            assertThat(template.bind("_x")).isSameAs(bound);
+            assertThat(CodeBlock.of("return $N;\n", "_x")).isSameAs(bound);
+        }
+    }
+
+    @Test
+    public void templateRejectsMissingArguments() {
+        CodeBlock.Template template = CodeBlock.template("$a:L + $b:L");
+        try {
+            template.bind(1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage()).isEqualTo("expected 2 arguments for [a, b], received 1");
+        }
+        try {
+            template.bind(new LinkedHashMap<String, Object>());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage()).isEqualTo("Missing named argument for $a");
+        }
+    }
+
+    @Test
+    public void primitiveLiteralsUseCSharpSuffixes() {
+        CodeBlock block = CodeBlock.builder()
+                .addLiteral(1).add(", ")
+                .addLiteral(2L).add(", ")
+                .addLiteral(0.5f).add(", ")
+                .addLiteral(0.25).add(", ")
+                .addLiteral(new BigDecimal("1.50")).add(", ")
+                .addUnsignedLiteral(-1).add(", ")
+                .addUnsignedLiteral(-1L).add(", ")
+                .addLiteral(Double.NaN).add(", ")
+                .addLiteral(Float.NEGATIVE_INFINITY)
+                .build();
+        assertThat(block.toString()).isEqualTo("1, 2L, 0.5f, 0.25, 1.50m, 4294967295U, "
+                + "18446744073709551615UL, double.NaN, float.NegativeInfinity");
+    }
+
+    @Test
+    public void boxedLiteralsHaveNoSuffix() {
+        assertThat(CodeBlock.of("int x = $L;", 7L).toString()).isEqualTo("int x = 7;");
+        assertThat(CodeBlock.of("$L, $L", 1.5f, 0.25).toString()).isEqualTo("1.5, 0.25");
+    }
+
+    @Test
+    public void shortArrayInitializerFitsOnOneLine() {
+        assertThat(CodeBlock.of("int[] a = $L;", CodeBlock.arrayInitializer(1, 2, 3)).toString())
+                .isEqualTo("int[] a = { 1, 2, 3 };");
+        assertThat(CodeBlock.arrayInitializer(new long[] {1, -2}).toString())
+                .isEqualTo("{ 1L, -2L }");
+        assertThat(CodeBlock.arrayInitializer(new double[0]).toString()).isEqualTo("{ }");
+    }
+
+    @Test
+    public void longArrayInitializerIsPackedIntoRows() {
+        int[] values = new int[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 7919;
+        }
+        String code = CodeBlock.of("int[] table = $L;\n", CodeBlock.arrayInitializer(values))
+                .toString();
+
+        String[] lines = code.split("\n");
+        assertThat(lines[0]).isEqualTo("int[] table = {");
+        assertThat(lines[lines.length - 1]).isEqualTo("};");
+        List<String> rows = new ArrayList<>();
+        for (int i = 1; i < lines.length - 1; i++) {
+            assertThat(lines[i].startsWith("\t")).isTrue();
+            assertThat(lines[i].length() <= 100).isTrue();
+            // No value is longer than 9 characters, so a shorter row would have room for another.
+            assertThat(i == lines.length - 2 || lines[i].length() > 90).isTrue();
+            rows.add(lines[i].substring(1));
+        }
+        assertThat(String.join(" ", rows)).isEqualTo(IntStream.of(values)
+                .mapToObj(Integer::toString)
+                .collect(Collectors.joining(", ")));
+    }
+}
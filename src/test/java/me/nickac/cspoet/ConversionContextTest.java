@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public final class ConversionContextTest {
+    private static final String SOURCE = ""
+            + "package test;\n"
+            + "@Deprecated\n"
+            + "public abstract class Movie implements Comparable<Movie> {\n"
+            + "  public abstract int compareTo(Movie other);\n"
+            + "}\n";
+
+    @Test
+    public void conversionsAreMemoizedWithinARound() {
+        List<String> failures = new ArrayList<>();
+        AtomicInteger rounds = new AtomicInteger();
+        compile(new AbstractProcessor() {
+            final ConversionContext context = ConversionContext.create();
+
+            @Override
+            public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+                context.forRound(roundEnv);
+                rounds.incrementAndGet();
+                if (roundEnv.processingOver()) {
+                    if (context.size() != 0) failures.add("context not cleared for new round");
+                    return false;
+                }
+                TypeElement movie = processingEnv.getElementUtils().getTypeElement("test.Movie");
+                TypeMirror type = movie.asType();
+                AnnotationMirror deprecated = movie.getAnnotationMirrors().get(0);
+                ExecutableElement compareTo = ElementFilter.methodsIn(movie.getEnclosedElements()).get(0);
+
+                check(ClassName.get(movie, context) == ClassName.get(movie, context), "class name");
+                check(TypeName.get(type, context) == TypeName.get(type, context), "type name");
+                check(TypeName.get(type, context).equals(TypeName.get(type)), "type name value");
+                check(AttributeSpec.get(deprecated, context) == AttributeSpec.get(deprecated, context),
+                        "attribute");
+                MethodSpec first = MethodSpec.overriding(compareTo, context).build();
+                MethodSpec second = MethodSpec.overriding(compareTo, context).build();
+                check(first != second && first.equals(second), "overriding");
+                check(first.equals(MethodSpec.overriding(compareTo).build()), "overriding value");
+                check(context.size() == 4, "size " + context.size());
+                return false;
+            }
+
+            private void check(boolean condition, String message) {
+                if (!condition) failures.add(message);
+            }
+        });
+
+        assertThat(failures).isEmpty();
+        assertThat(rounds.get()).isEqualTo(2);
+    }
+
+    private static void compile(AbstractProcessor processor) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject source = new SimpleJavaFileObject(
+                URI.create("string:///test/Movie.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return SOURCE;
+            }
+        };
+        StringWriter output = new StringWriter();
+        JavaCompiler.CompilationTask task = compiler.getTask(output, null, null,
+                Arrays.asList("-proc:only"), null, Collections.singletonList(source));
+        task.setProcessors(Collections.singletonList(new AnyAnnotationProcessor(processor)));
+        assertThat(task.call()).isTrue();
+    }
+
+    @SupportedAnnotationTypes("*")
+    private static final class AnyAnnotationProcessor extends AbstractProcessor {
+        private final AbstractProcessor delegate;
+
+        AnyAnnotationProcessor(AbstractProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void init(ProcessingEnvironment env) {
+            super.init(env);
+            delegate.init(env);
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return delegate.process(annotations, roundEnv);
+        }
+    }
+}
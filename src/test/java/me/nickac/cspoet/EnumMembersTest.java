@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class EnumMembersTest {
+    private static final ClassName FLAGS = ClassName.get("System", "Flags");
+    private static final ClassName OBSOLETE = ClassName.get("System", "Obsolete");
+
+    @Test
+    public void emitsValuesAndAttributes() {
+        TypeSpec access = TypeSpec.enumBuilder("Access")
+                .addModifiers(CSharpModifier.PUBLIC)
+                .addAnnotation(FLAGS)
+                .addEnumMember("None", 0)
+                .addEnumMember("Read", 1)
+                .addEnumMember("Write", 2)
+                .addEnumMember("ReadWrite", CodeBlock.of("Read | Write"))
+                .addEnumMember("Legacy", 4, AttributeSpec.builder(OBSOLETE).build())
+                .addEnumMember("Next")
+                .build();
+        assertThat(access.toString()).isEqualTo(""
+                + "[System.Flags]\n"
+                + "public enum Access {\n"
+                + "\tNone = 0,\n"
+                + "\tRead = 1,\n"
+                + "\tWrite = 2,\n"
+                + "\tReadWrite = Read | Write,\n"
+                + "\t[System.Obsolete]\n"
+                + "\tLegacy = 4,\n"
+                + "\tNext\n"
+                + "}\n");
+    }
+
+    @Test
+    public void largeEnumRoundTrips() {
+        TypeSpec.Builder builder = TypeSpec.enumBuilder("Code");
+        for (int i = 0; i < 50_000; i++) {
+            builder.addEnumMember("Code" + i, 17L * i);
+        }
+        TypeSpec code = builder.build();
+        assertThat(code.enumMembers.size()).isEqualTo(50_000);
+        assertThat(code.enumMembers.name(49_999)).isEqualTo("Code49999");
+        assertThat(code.enumMembers.value(3).toString()).isEqualTo("51");
+        assertThat(code.toString()).contains("\tCode49998 = 849966,\n\tCode49999 = 849983\n}\n");
+
+        TypeSpec copy = code.toBuilder().build();
+        assertThat(copy.toString()).isEqualTo(code.toString());
+        assertThat(Structure.equal(copy, code)).isTrue();
+    }
+
+    @Test
+    public void diffReportsChangedMembers() {
+        CSharpFile before = CSharpFile.builder("Codes", TypeSpec.enumBuilder("Status")
+                .addEnumMember("Ok", 200)
+                .addEnumMember("NotFound", 404)
+                .build()).build();
+        CSharpFile after = CSharpFile.builder("Codes", TypeSpec.enumBuilder("Status")
+                .addEnumMember("Ok", 200)
+                .addEnumMember("NotFound", 410)
+                .addEnumMember("Teapot", 418)
+                .build()).build();
+        SpecDiff diff = SpecDiff.compare(before, after);
+        assertThat(diff.changed).containsExactly("Status.NotFound");
+        assertThat(diff.added).containsExactly("Status.Teapot");
+    }
+
+    @Test
+    public void rejectsInvalidMembers() {
+        try {
+            TypeSpec.classBuilder("Status").addEnumMember("Ok");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            TypeSpec.enumBuilder("Status").addEnumMember("Ok").addEnumMember("Ok", 1).build();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage()).isEqualTo("duplicate enum member Ok");
+        }
+        try {
+            TypeSpec.enumBuilder("Status").addEnumConstant("OK").addEnumMember("Ok");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
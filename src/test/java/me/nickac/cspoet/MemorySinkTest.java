@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class MemorySinkTest {
+    @Test
+    public void writeAndLookUp() throws IOException {
+        CSharpFile a = CSharpFile.builder("Foo.Bar", TypeSpec.classBuilder("A").build()).build();
+        CSharpFile b = CSharpFile.builder("Foo", TypeSpec.classBuilder("B").build()).build();
+        MemorySink sink = new MemorySink();
+        sink.writeAll(Arrays.asList(a, b));
+        sink.write("Notes/readme.txt", ByteBuffer.wrap("hé".getBytes(UTF_8)));
+
+        assertThat(sink.size()).isEqualTo(3);
+        assertThat(sink.paths()).containsExactly("Foo/B.cs", "Foo/Bar/A.cs", "Notes/readme.txt")
+                .inOrder();
+        assertThat(sink.getString("Foo/Bar/A.cs")).isEqualTo(a.toString());
+        assertThat(sink.get("Notes/readme.txt").remaining()).isEqualTo(3);
+        assertThat(sink.get("Missing.cs")).isNull();
+        assertThat(sink.totalSize()).isEqualTo(
+                a.toString().length() + b.toString().length() + 3L);
+
+        List<String> visited = new ArrayList<>();
+        sink.forEach((path, content) -> visited.add(path + ":" + content.remaining()));
+        assertThat(visited).containsExactly("Foo/B.cs:" + b.toString().length(),
+                "Foo/Bar/A.cs:" + a.toString().length(), "Notes/readme.txt:3").inOrder();
+
+        sink.write("Notes/readme.txt", ByteBuffer.allocate(10));
+        assertThat(sink.totalSize()).isEqualTo(
+                a.toString().length() + b.toString().length() + 10L);
+        sink.clear();
+        assertThat(sink.size()).isEqualTo(0);
+        assertThat(sink.totalSize()).isEqualTo(0L);
+    }
+
+    @Test
+    public void flushTo() throws IOException {
+        CSharpFile file = CSharpFile.builder("Foo.Bar", TypeSpec.classBuilder("A").build()).build();
+        MemorySink sink = new MemorySink();
+        file.writeTo(sink);
+
+        Path directory = Files.createTempDirectory("memory-sink");
+        try {
+            sink.flushTo(directory);
+            Path written = directory.resolve("Foo").resolve("Bar").resolve("A.cs");
+            assertThat(new String(Files.readAllBytes(written), UTF_8)).isEqualTo(file.toString());
+
+            Files.delete(written);
+            Files.delete(written.getParent());
+            Files.delete(written.getParent().getParent());
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void rejectsPathsLeavingTheDirectory() {
+        MemorySink sink = new MemorySink();
+        for (String path: new String[] {"", "../Escaped.cs", "Foo/../../Escaped.cs", "/Abs.cs",
+                "C:\\Abs.cs", "Foo\\..\\..\\Escaped.cs"}) {
+            try {
+                sink.write(path, ByteBuffer.allocate(0));
+                fail(path);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        sink.write("Foo/..Bar/A.cs", ByteBuffer.allocate(0));
+        assertThat(sink.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@RunWith(JUnit4.class)
+public final class RenderCacheTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("render-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path: paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static CSharpFile file(String name, int columnLimit) {
+        return CSharpFile.builder("Cached", TypeSpec.classBuilder(name)
+                .addField(FieldSpec.builder(ClassName.get("System", "Uri"), "home")
+                        .initializer("new $T($S)", ClassName.get("System", "Uri"), "https://example.com")
+                        .build())
+                .build())
+                .columnLimit(columnLimit)
+                .build();
+    }
+
+    @Test
+    public void hitsAcrossInstances() throws IOException {
+        RenderCache first = RenderCache.builder(directory).build();
+        assertThat(new String(first.render(file("A", 100)), UTF_8)).isEqualTo(file("A", 100).toString());
+        assertThat(first.misses()).isEqualTo(1L);
+
+        RenderCache second = RenderCache.builder(directory).build();
+        MemorySink sink = new MemorySink();
+        second.write(file("A", 100), sink);
+        second.write(file("A", 80), sink);
+        second.write(file("B", 100), sink);
+        assertThat(second.hits()).isEqualTo(1L);
+        assertThat(second.misses()).isEqualTo(2L);
+        assertThat(sink.getString("Cached/A.cs")).isEqualTo(file("A", 80).toString());
+    }
+
+    @Test
+    public void typeVariableBoundsAreHashed() throws IOException {
+        RenderCache cache = RenderCache.builder(directory).build();
+        cache.render(boxOf(ClassName.get("System", "IComparable")));
+        cache.render(boxOf(ClassName.get("System", "IDisposable")));
+        assertThat(cache.hits()).isEqualTo(0L);
+        assertThat(cache.misses()).isEqualTo(2L);
+    }
+
+    private static CSharpFile boxOf(ClassName bound) {
+        return CSharpFile.builder("Cached", TypeSpec.classBuilder("Box")
+                .addTypeVariable(TypeVariableName.get("T", bound))
+                .build()).build();
+    }
+
+    @Test
+    public void lazyLiteralsAreHashedByValue() throws IOException {
+        RenderCache cache = RenderCache.builder(directory).build();
+        for (int i = 0; i < 3; i++) {
+            cache.render(lazyFile(1));
+        }
+        cache.render(lazyFile(2));
+        assertThat(cache.hits()).isEqualTo(2L);
+        assertThat(cache.misses()).isEqualTo(2L);
+        assertThat(entries()).hasSize(2);
+    }
+
+    private static CSharpFile lazyFile(int value) {
+        return CSharpFile.builder("Cached", TypeSpec.classBuilder("Lazy")
+                .addField(FieldSpec.builder(TypeName.INT, "x")
+                        .initializer(CodeBlock.lazy(() -> value))
+                        .build())
+                .build()).build();
+    }
+
+    @Test
+    public void statementCountIsHashed() throws IOException {
+        RenderCache cache = RenderCache.builder(directory).build();
+        CodeBlock returnOne = CodeBlock.of("return 1");
+        byte[] expression = cache.render(propertyFile(PropertySpec.propertyBuilder("X")
+                .returns(TypeName.INT).getter().addStatement("$L", returnOne).endGetter().build()));
+        byte[] block = cache.render(propertyFile(PropertySpec.propertyBuilder("X")
+                .returns(TypeName.INT).getter().addStatement(returnOne).endGetter().build()));
+        assertThat(cache.hits()).isEqualTo(0L);
+        assertThat(new String(expression, UTF_8)).contains("int X => 1;");
+        assertThat(new String(block, UTF_8)).doesNotContain("int X => 1;");
+    }
+
+    private static CSharpFile propertyFile(PropertySpec property) {
+        return CSharpFile.builder("Cached", TypeSpec.classBuilder("Accessor")
+                .addProperty(property)
+                .build()).build();
+    }
+
+    @Test
+    public void binaryLiteralsAreNotCached() throws IOException {
+        RenderCache cache = RenderCache.builder(directory).build();
+        CSharpFile file = CSharpFile.builder("Cached", TypeSpec.classBuilder("Blob")
+                .addProperty(BinaryLiteral.of(ByteBuffer.wrap(new byte[] {1})).spanProperty("Data"))
+                .build()).build();
+        cache.render(file);
+        cache.render(file);
+        assertThat(cache.hits()).isEqualTo(0L);
+        assertThat(cache.misses()).isEqualTo(0L);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        RenderCache cache = RenderCache.builder(directory).maxSize(1_000_000).build();
+        for (int i = 0; i < 10; i++) {
+            cache.render(file("Type" + i, 100));
+        }
+        List<Path> entries = entries();
+        assertThat(entries).hasSize(10);
+        long size = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Files.setLastModifiedTime(entries.get(i), FileTime.fromMillis(1_000_000L * (i + 1)));
+            size += Files.size(entries.get(i));
+        }
+
+        // Each entry is the same size; keeping nine tenths of five entries leaves four.
+        RenderCache small = RenderCache.builder(directory).maxSize(size / 2).build();
+        small.evict();
+        List<Path> remaining = entries();
+        assertThat(remaining).hasSize(4);
+        assertThat(remaining.containsAll(entries.subList(6, 10))).isTrue();
+    }
+
+    private List<Path> entries() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().equals(".lock"))
+                    .sorted()
+                    .forEach(result::add);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public final class RenderContextTest {
+
+    private static TypeSpec sampleType() {
+        PropertySpec xProperty = PropertySpec.propertyBuilder("X")
+                .addModifier(CSharpModifier.PUBLIC)
+                .returns(TypeName.DOUBLE)
+                .getter()
+                .addStatement("return _x")
+                .endGetter()
+                .build();
+        return TypeSpec.classBuilder("Point")
+                .addModifiers(CSharpModifier.PUBLIC)
+                .addSuperinterface(ClassName.get("Lol", "RemoteObject"))
+                .addField(TypeName.DOUBLE, "_x", CSharpModifier.PRIVATE)
+                .addProperty(xProperty)
+                .build();
+    }
+
+    @Test
+    public void explicitContextMatchesToString() {
+        TypeSpec type = sampleType();
+        CSharpFile file = CSharpFile.builder("Geometry", type).build();
+        RenderContext context = RenderContext.create();
+
+        assertThat(context.render(file)).isEqualTo(file.toString());
+        assertThat(context.render(type)).isEqualTo(type.toString());
+        assertThat(context.render(type.fieldSpecs.get(0))).isEqualTo(type.fieldSpecs.get(0).toString());
+        assertThat(context.render(type.propertySpecs.get(0)))
+                .isEqualTo(type.propertySpecs.get(0).toString());
+        assertThat(context.render(ClassName.get("Lol", "RemoteObject"))).isEqualTo("Lol.RemoteObject");
+    }
+
+    @Test
+    public void contextIsReusable() {
+        RenderContext context = RenderContext.create();
+        CSharpFile first = CSharpFile.builder("Geometry", sampleType()).build();
+        CSharpFile second = CSharpFile.builder("", TypeSpec.classBuilder("Empty").build()).build();
+
+        String expected = first.toString();
+        assertThat(context.render(first)).isEqualTo(expected);
+        assertThat(context.render(second)).isEqualTo("class Empty {\n}\n");
+        assertThat(context.render(first)).isEqualTo(expected);
+    }
+
+    @Test
+    public void toStringDuringEmissionUsesSeparateContext() {
+        // PropertySpec renders its getter with toString() while it is itself being emitted.
+        TypeSpec type = sampleType();
+        String rendered = type.toString();
+        assertThat(rendered).contains("public double X => _x;\n");
+        assertThat(type.toString()).isEqualTo(rendered);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class RenderPipelineTest {
+    private static Stream<CSharpFile> files(int count, AtomicInteger produced) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            produced.incrementAndGet();
+            return CSharpFile.builder("Pipeline", TypeSpec.classBuilder("Type" + i).build()).build();
+        });
+    }
+
+    @Test
+    public void rendersAndWritesEveryFileWithBackpressure() throws IOException {
+        AtomicInteger produced = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        MemorySink memory = new MemorySink();
+        SourceSink slow = new SourceSink() {
+            @Override
+            public void write(String path, ByteBuffer content) throws IOException {
+                maxInFlight.accumulateAndGet(produced.get() - memory.size(), Math::max);
+                memory.write(path, content);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        RenderPipeline.builder(slow).renderers(3).writers(2).queueCapacity(4).build()
+                .run(files(500, produced));
+
+        assertThat(memory.size()).isEqualTo(500);
+        assertThat(memory.getString("Pipeline/Type123.cs"))
+                .isEqualTo("namespace Pipeline {\n\tclass Type123 {\n\t}\n}");
+        // Queued files, plus one file held by each renderer and writer.
+        assertThat(maxInFlight.get() <= 4 + 3 + 2).isTrue();
+    }
+
+    @Test
+    public void firstFailureIsThrown() {
+        AtomicInteger produced = new AtomicInteger();
+        IOException failure = new IOException("disk full");
+        SourceSink failing = new SourceSink() {
+            @Override
+            public void write(String path, ByteBuffer content) throws IOException {
+                if (path.equals("Pipeline/Type10.cs")) throw failure;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try {
+            RenderPipeline.builder(failing).renderers(2).queueCapacity(1).build()
+                    .run(files(100_000, produced));
+            fail();
+        } catch (IOException expected) {
+            assertThat(expected).isSameAs(failure);
+        }
+        assertThat(produced.get() < 100_000).isTrue();
+    }
+
+    @Test
+    public void interruptedRunWaitsForThreadsToStop() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        SourceSink stubborn = new SourceSink() {
+            @Override
+            public void write(String path, ByteBuffer content) {
+                inFlight.incrementAndGet();
+                // Ignores interrupts, like a write to a sink that can't be cancelled.
+                long deadline = System.nanoTime() + 50_000_000L;
+                while (System.nanoTime() < deadline) {
+                    Thread.yield();
+                }
+                written.incrementAndGet();
+                inFlight.decrementAndGet();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        Thread caller = Thread.currentThread();
+        Thread interrupter = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            caller.interrupt();
+        });
+        interrupter.start();
+        try {
+            RenderPipeline.builder(stubborn).writers(1).build().run(files(20, new AtomicInteger()));
+            fail();
+        } catch (InterruptedIOException expected) {
+        } finally {
+            assertThat(Thread.interrupted()).isTrue();
+            interrupter.join();
+        }
+
+        assertThat(inFlight.get()).isEqualTo(0);
+        int writtenOnReturn = written.get();
+        Thread.sleep(100);
+        assertThat(written.get()).isEqualTo(writtenOnReturn);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public final class SpecDiffTest {
+    private static TypeSpec.Builder widget() {
+        return widget("count += amount", TypeSpec.classBuilder("Part")
+                .addField(TypeName.INT, "size")
+                .build());
+    }
+
+    private static TypeSpec.Builder widget(String addStatement, TypeSpec part) {
+        return TypeSpec.classBuilder("Widget")
+                .addModifiers(CSharpModifier.PUBLIC)
+                .addField(TypeName.INT, "count", CSharpModifier.PRIVATE)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addParameter(TypeName.STRING, "name")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("Add")
+                        .addParameter(TypeName.INT, "amount")
+                        .addStatement(addStatement)
+                        .build())
+                .addType(part);
+    }
+
+    @Test
+    public void structurallyEqualFilesAreUnchanged() {
+        CSharpFile previous = CSharpFile.builder("Foo", widget().build()).build();
+        CSharpFile current = CSharpFile.builder("Foo", widget().build()).build();
+
+        SpecDiff diff = SpecDiff.compare(previous, current);
+        assertThat(diff.isUnchanged()).isTrue();
+        assertThat(diff.path).isEqualTo("Foo/Widget.cs");
+        assertThat(Structure.equal(previous, current)).isTrue();
+    }
+
+    @Test
+    public void reportsMembers() {
+        TypeSpec previousType = widget()
+                .addMethod(MethodSpec.methodBuilder("Add")
+                        .addParameter(TypeName.LONG, "amount")
+                        .build())
+                .build();
+        TypeSpec currentType = widget("count -= amount", TypeSpec.classBuilder("Part")
+                .addField(TypeName.INT, "size")
+                .addField(TypeName.INT, "weight")
+                .build())
+                .addModifiers(CSharpModifier.SEALED)
+                .addField(TypeName.STRING, "label")
+                .build();
+
+        SpecDiff diff = SpecDiff.compare(CSharpFile.builder("Foo", previousType).build(),
+                CSharpFile.builder("Foo", currentType).build());
+        assertThat(diff.added).containsExactly("Widget.Part.weight", "Widget.label");
+        assertThat(diff.removed).containsExactly("Widget.Add(long)");
+        assertThat(diff.changed).containsExactly("Widget", "Widget.Add(int)");
+    }
+
+    @Test
+    public void reorderedMembersChangeTheType() {
+        TypeSpec a = TypeSpec.classBuilder("A")
+                .addField(TypeName.INT, "x")
+                .addField(TypeName.INT, "y")
+                .build();
+        TypeSpec b = TypeSpec.classBuilder("A")
+                .addField(TypeName.INT, "y")
+                .addField(TypeName.INT, "x")
+                .build();
+        SpecDiff diff = SpecDiff.compare(CSharpFile.builder("", a).build(),
+                CSharpFile.builder("", b).build());
+        assertThat(diff.changed).containsExactly("A");
+    }
+
+    @Test
+    public void compareAllSkipsUnchangedFiles() {
+        TypeSpec shared = TypeSpec.classBuilder("Shared").build();
+        List<CSharpFile> previous = Arrays.asList(
+                CSharpFile.builder("Foo", shared).build(),
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("Gone").build()).build(),
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("Edited").build()).build());
+        List<CSharpFile> current = Arrays.asList(
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("Edited")
+                        .addField(TypeName.INT, "x")
+                        .build()).build(),
+                CSharpFile.builder("Foo", shared).build(),
+                CSharpFile.builder("Bar", TypeSpec.classBuilder("New").build()).build());
+
+        List<SpecDiff> diffs = SpecDiff.compareAll(previous, current);
+        assertThat(diffs.toString()).isEqualTo("["
+                + "Bar/New.cs added=[New] removed=[] changed=[], "
+                + "Foo/Edited.cs added=[Edited.x] removed=[] changed=[], "
+                + "Foo/Gone.cs added=[] removed=[Gone] changed=[]]");
+    }
+
+    @Test
+    public void fileLevelChangesChangeTheTopLevelType() {
+        TypeSpec type = TypeSpec.classBuilder("A").build();
+        SpecDiff diff = SpecDiff.compare(CSharpFile.builder("Foo", type).build(),
+                CSharpFile.builder("Foo", type).addFileComment("Generated").build());
+        assertThat(diff.changed).containsExactly("A");
+    }
+
+    @Test
+    public void typeVariableBoundsChangeTheType() {
+        ClassName comparable = ClassName.get("System", "IComparable");
+        ClassName disposable = ClassName.get("System", "IDisposable");
+        SpecDiff diff = SpecDiff.compare(
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("Box")
+                        .addTypeVariable(TypeVariableName.get("T", comparable))
+                        .build()).build(),
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("Box")
+                        .addTypeVariable(TypeVariableName.get("T", disposable))
+                        .build()).build());
+        assertThat(diff.changed).containsExactly("Box");
+    }
+
+    @Test
+    public void namespacesAreNotNestedTypes() {
+        ClassName inNamespace = ClassName.get("Foo", "Bar");
+        ClassName nested = ClassName.get("", "Foo", "Bar");
+        assertThat(inNamespace.toString()).isEqualTo(nested.toString());
+        SpecDiff diff = SpecDiff.compare(
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("A")
+                        .addField(inNamespace, "bar")
+                        .build()).build(),
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("A")
+                        .addField(nested, "bar")
+                        .build()).build());
+        assertThat(diff.changed).containsExactly("A.bar");
+    }
+
+    @Test
+    public void overloadsAreKeyedByArityAndModifiers() {
+        SpecDiff diff = SpecDiff.compare(
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("A")
+                        .addMethod(MethodSpec.methodBuilder("Run").build())
+                        .addMethod(MethodSpec.methodBuilder("Run")
+                                .addTypeVariable(TypeVariableName.get("T"))
+                                .build())
+                        .addMethod(MethodSpec.methodBuilder("Take")
+                                .addParameter(TypeName.INT, "value")
+                                .build())
+                        .addMethod(MethodSpec.methodBuilder("Take")
+                                .addParameter(ParameterSpec.builder(TypeName.INT, "value",
+                                        CSharpModifier.READONLY).build())
+                                .build())
+                        .build()).build(),
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("A")
+                        .addMethod(MethodSpec.methodBuilder("Run").build())
+                        .addMethod(MethodSpec.methodBuilder("Run")
+                                .addTypeVariable(TypeVariableName.get("T"))
+                                .addStatement("return")
+                                .build())
+                        .addMethod(MethodSpec.methodBuilder("Take")
+                                .addParameter(TypeName.INT, "value")
+                                .build())
+                        .addMethod(MethodSpec.methodBuilder("Take")
+                                .addParameter(ParameterSpec.builder(TypeName.INT, "value",
+                                        CSharpModifier.READONLY).build())
+                                .addStatement("return")
+                                .build())
+                        .build()).build());
+        assertThat(diff.changed).containsExactly("A.Run``1()", "A.Take(readonly int)");
+        assertThat(diff.added).isEmpty();
+        assertThat(diff.removed).isEmpty();
+    }
+
+    @Test
+    public void collidingMembersChangeTheType() {
+        TypeSpec.Builder type = TypeSpec.classBuilder("A")
+                .addMethod(MethodSpec.methodBuilder("Run")
+                        .addParameter(ClassName.get("Foo", "Bar"), "bar")
+                        .build());
+        SpecDiff diff = SpecDiff.compare(
+                CSharpFile.builder("Foo", type.build()).build(),
+                CSharpFile.builder("Foo", type
+                        .addMethod(MethodSpec.methodBuilder("Run")
+                                .addParameter(ClassName.get("", "Foo", "Bar"), "bar")
+                                .build())
+                        .build()).build());
+        assertThat(diff.changed).containsExactly("A", "A.Run(Foo.Bar)");
+    }
+
+    @Test
+    public void lazyLiteralsAreComparedByValue() {
+        SpecDiff diff = SpecDiff.compare(lazyFile(1), lazyFile(1));
+        assertThat(diff.isUnchanged()).isTrue();
+        assertThat(SpecDiff.compare(lazyFile(1), lazyFile(2)).changed).containsExactly("A.X");
+    }
+
+    private static CSharpFile lazyFile(int value) {
+        return CSharpFile.builder("Foo", TypeSpec.classBuilder("A")
+                .addField(FieldSpec.builder(TypeName.INT, "X")
+                        .initializer(CodeBlock.lazy(() -> value))
+                        .build())
+                .build()).build();
+    }
+
+    @Test
+    public void accessorStatementCountChangesTheProperty() {
+        CodeBlock returnOne = CodeBlock.of("return 1");
+        // The same parts, but only the first getter counts as a single statement.
+        PropertySpec expression = PropertySpec.propertyBuilder("X")
+                .returns(TypeName.INT)
+                .getter()
+                .addStatement("$L", returnOne)
+                .endGetter()
+                .build();
+        PropertySpec block = PropertySpec.propertyBuilder("X")
+                .returns(TypeName.INT)
+                .getter()
+                .addStatement(returnOne)
+                .endGetter()
+                .build();
+        assertThat(expression.toString()).isEqualTo("int X => 1;\n");
+        assertThat(block.toString()).isNotEqualTo(expression.toString());
+
+        SpecDiff diff = SpecDiff.compare(
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("A").addProperty(expression).build())
+                        .build(),
+                CSharpFile.builder("Foo", TypeSpec.classBuilder("A").addProperty(block).build())
+                        .build());
+        assertThat(diff.changed).containsExactly("A.X");
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the retained heap of typical specs. This is not a test; run it by hand, ideally with a
+ * fixed heap like {@code -Xms1g -Xmx1g}, and compare the numbers before and after a change to how
+ * specs are laid out in memory.
+ */
+public final class SpecFootprintBenchmark {
+    private static final int COUNT = 100_000;
+    private static final ClassName STRING_BUILDER = ClassName.get("System.Text", "StringBuilder");
+
+    public static void main(String[] args) {
+        measure("CodeBlock", i -> CodeBlock.of("$T.Append($S)", STRING_BUILDER, "value"));
+        measure("FieldSpec", i -> FieldSpec.builder(TypeName.INT, "field" + (i & 0xff),
+                CSharpModifier.PRIVATE).build());
+        measure("MethodSpec", i -> MethodSpec.methodBuilder("Method" + (i & 0xff))
+                .addModifiers(CSharpModifier.PUBLIC)
+                .returns(TypeName.INT)
+                .addParameter(TypeName.INT, "value")
+                .addStatement("return value + $L", i & 0xff)
+                .build());
+        measure("TypeSpec", i -> TypeSpec.classBuilder("Type" + (i & 0xff))
+                .addModifiers(CSharpModifier.PUBLIC)
+                .build());
+    }
+
+    private static void measure(String name, IntFunction<Object> factory) {
+        // Warm up so that class loading and caches aren't counted.
+        for (int i = 0; i < 1_000; i++) {
+            factory.apply(i);
+        }
+        List<Object> retained = new ArrayList<>(COUNT);
+        long before = usedHeap();
+        for (int i = 0; i < COUNT; i++) {
+            retained.add(factory.apply(i));
+        }
+        long after = usedHeap();
+        long perSpec = (after - before) / COUNT;
+        System.out.printf("%-10s %6d bytes each (%d retained)%n", name, perSpec, retained.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
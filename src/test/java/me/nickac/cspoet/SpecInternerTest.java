@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class SpecInternerTest {
+    private static AttributeSpec dataMember(String name) {
+        return AttributeSpec.builder(ClassName.get("System.Runtime.Serialization", "DataMember"))
+                .addMember("Name", "$S", name)
+                .build();
+    }
+
+    @Test
+    public void sharesEqualSpecsWithinScope() {
+        try (SpecInterner scope = SpecInterner.open()) {
+            CodeBlock a = CodeBlock.of("return $T.Empty", ClassName.get("System", "String"));
+            CodeBlock b = CodeBlock.of("return $T.Empty", ClassName.get("System", "String"));
+            assertThat(a).isSameAs(b);
+            assertThat(CodeBlock.of("return $T.Empty", ClassName.get("System", "Guid")) == a)
+                    .isFalse();
+
+            assertThat(dataMember("id")).isSameAs(dataMember("id"));
+            assertThat(dataMember("id") == dataMember("name")).isFalse();
+
+            TypeName list = ParameterizedTypeName.get(
+                    ClassName.get("System.Collections.Generic", "List"), TypeName.INT);
+            assertThat(ParameterizedTypeName.get(ClassName.get("System.Collections.Generic", "List"),
+                    TypeName.INT)).isSameAs(list);
+            assertThat(NullableTypeName.of(TypeName.INT)).isSameAs(NullableTypeName.of(TypeName.INT));
+            assertThat(scope.hits() > 0).isTrue();
+        }
+
+        assertThat(CodeBlock.of("x") == CodeBlock.of("x")).isFalse();
+    }
+
+    @Test
+    public void statementCountIsPartOfTheStructure() {
+        try (SpecInterner ignored = SpecInterner.open()) {
+            CodeBlock unsized = CodeBlock.builder().add("$[").add("return 1").add(";\n$]").build();
+            PropertySpec x = PropertySpec.propertyBuilder("X")
+                    .addModifier(CSharpModifier.PUBLIC)
+                    .returns(TypeName.INT)
+                    .getter()
+                    .addStatement("return 1")
+                    .endGetter()
+                    .build();
+            assertThat(x.getterCode == unsized).isFalse();
+            assertThat(x.toString()).isEqualTo("public int X => 1;\n");
+        }
+    }
+
+    @Test
+    public void mutableArgumentsAreNotShared() {
+        try (SpecInterner ignored = SpecInterner.open()) {
+            AtomicInteger counter = new AtomicInteger();
+            CodeBlock a = CodeBlock.of("$L", counter);
+            CodeBlock b = CodeBlock.of("$L", counter);
+            assertThat(a == b).isFalse();
+        }
+    }
+
+    @Test
+    public void namespacesAreNotSharedWithEnclosingClasses() {
+        try (SpecInterner ignored = SpecInterner.open()) {
+            ClassName inNamespace = ClassName.get("Foo", "Bar");
+            ClassName nested = ClassName.get("", "Foo", "Bar");
+            assertThat(nested == inNamespace).isFalse();
+            assertThat(nested.packageName).isEqualTo("");
+            assertThat(nested.enclosingClassName()).isNotNull();
+
+            CodeBlock a = CodeBlock.of("new $T()", inNamespace);
+            CodeBlock b = CodeBlock.of("new $T()", nested);
+            assertThat(a == b).isFalse();
+            assertThat(b.args.get(0)).isSameAs(nested);
+        }
+    }
+
+    @Test
+    public void nestedScopes() {
+        try (SpecInterner outer = SpecInterner.open()) {
+            CodeBlock a = CodeBlock.of("x");
+            try (SpecInterner inner = SpecInterner.open()) {
+                assertThat(CodeBlock.of("x") == a).isFalse();
+                try {
+                    outer.close();
+                    fail();
+                } catch (IllegalStateException expected) {
+                }
+                assertThat(inner.size()).isEqualTo(1);
+            }
+            assertThat(CodeBlock.of("x")).isSameAs(a);
+        }
+    }
+}
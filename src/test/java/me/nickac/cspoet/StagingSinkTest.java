@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@RunWith(JUnit4.class)
+public final class StagingSinkTest {
+    @Test
+    public void drainDirectSlabs() throws IOException {
+        List<CSharpFile> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            files.add(CSharpFile.builder("Staged", TypeSpec.classBuilder("Type" + i)
+                    .addJavadoc("Café € 😀 $L\n", i)
+                    .build()).build());
+        }
+
+        MemorySink target = new MemorySink();
+        try (StagingSink staging = StagingSink.builder().slabSize(256).build()) {
+            staging.writeAll(files);
+            staging.write("Big.bin", ByteBuffer.allocate(1000));
+            assertThat(staging.size()).isEqualTo(51);
+            assertThat(staging.get("Big.bin").remaining()).isEqualTo(1000);
+
+            staging.drainTo(target);
+            assertThat(staging.size()).isEqualTo(0);
+            assertThat(staging.stagedSize()).isEqualTo(0L);
+        }
+
+        assertThat(target.size()).isEqualTo(51);
+        assertThat(target.getString("Staged/Type7.cs")).isEqualTo(files.get(7).toString());
+        assertThat(target.get("Big.bin").remaining()).isEqualTo(1000);
+    }
+
+    @Test
+    public void mappedFileIsReusedAndDeleted() throws IOException {
+        Path directory = Files.createTempDirectory("staging");
+        try {
+            CSharpFile file = CSharpFile.builder("A", TypeSpec.classBuilder("B").build()).build();
+            MemorySink target = new MemorySink();
+            try (StagingSink staging = StagingSink.builder().mappedFile(directory).build()) {
+                for (int i = 0; i < 2; i++) {
+                    file.writeTo(staging);
+                    assertThat(staging.stagedSize()).isEqualTo((long) file.toString().length());
+                    staging.drainTo(target);
+                }
+            }
+            assertThat(target.getString("A/B.cs")).isEqualTo(file.toString());
+            assertThat(Files.list(directory).count()).isEqualTo(0L);
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void utf8Length() {
+        for (String s: new String[] {"", "abc", "é", "€", "😀", "a\ud83db",
+                "\ude00", "x\ud83d"}) {
+            assertThat(StagingSink.utf8Length(s)).isEqualTo(s.getBytes(UTF_8).length);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class TypeNameTest {
+    @SuppressWarnings("unused")
+    private static Map<String, List<Integer>> generic;
+    @SuppressWarnings("unused")
+    private static List<String>[] genericArray;
+
+    @Test
+    public void classConversionsAreCached() throws Exception {
+        assertThat(ClassName.get(Map.Entry.class)).isSameAs(ClassName.get(Map.Entry.class));
+        assertThat(TypeName.get(Map.Entry.class)).isSameAs(ClassName.get(Map.Entry.class));
+        assertThat(TypeName.get(String[].class)).isSameAs(TypeName.get(String[].class));
+        assertThat(TypeName.get(int.class)).isSameAs(TypeName.INT);
+        assertThat(ClassName.get(Map.Entry.class).toString()).isEqualTo("java.util.Map.Entry");
+    }
+
+    @Test
+    public void genericConversionsAreCached() throws Exception {
+        Type generic = TypeNameTest.class.getDeclaredField("generic").getGenericType();
+        Type genericArray = TypeNameTest.class.getDeclaredField("genericArray").getGenericType();
+
+        assertThat(TypeName.get(generic)).isSameAs(TypeName.get(generic));
+        assertThat(TypeName.get(genericArray)).isSameAs(TypeName.get(genericArray));
+        assertThat(TypeName.get(generic).toString())
+                .isEqualTo("java.util.Map<java.lang.String, java.util.List<java.lang.Integer>>");
+    }
+
+    @Test
+    public void boundedCacheEvictsLeastRecentlyUsed() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertThat(cache.get("a")).isEqualTo(1);
+        cache.put("c", 3);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.computeIfAbsent("a", k -> 10)).isEqualTo(1);
+        assertThat(cache.computeIfAbsent("b", k -> 20)).isEqualTo(20);
+    }
+
+    @Test
+    public void genericConversionsAreCachedByName() throws Exception {
+        // Each lookup returns a copy of the field, which parses a new instance of its type.
+        assertThat(genericFieldType() == genericFieldType()).isFalse();
+        TypeName typeName = TypeName.get(genericFieldType());
+        System.gc();
+        assertThat(TypeName.get(genericFieldType())).isSameAs(typeName);
+    }
+
+    private static Type genericFieldType() throws NoSuchFieldException {
+        return TypeNameTest.class.getDeclaredField("generic").getGenericType();
+    }
+
+    @Test
+    public void genericConversionsKeepTypeVariableBounds() throws Exception {
+        Type numbers = TypeNameTest.class.getDeclaredMethod("numbers").getGenericReturnType();
+        Type strings = TypeNameTest.class.getDeclaredMethod("strings").getGenericReturnType();
+        assertThat(numbers.getTypeName()).isEqualTo(strings.getTypeName());
+
+        TypeVariableName number = (TypeVariableName)
+                ((ParameterizedTypeName) TypeName.get(numbers)).typeArguments.get(0);
+        TypeVariableName string = (TypeVariableName)
+                ((ParameterizedTypeName) TypeName.get(strings)).typeArguments.get(0);
+        assertThat(number.bounds).containsExactly(ClassName.get(Number.class));
+        assertThat(string.bounds).containsExactly(ClassName.get(CharSequence.class));
+    }
+
+    @SuppressWarnings("unused")
+    private static <T extends Number> List<T> numbers() {
+        return null;
+    }
+
+    @SuppressWarnings("unused")
+    private static <T extends CharSequence> List<T> strings() {
+        return null;
+    }
+
+    @Test
+    public void parseTypeExpressions() {
+        assertThat(TypeName.parse("int")).isSameAs(TypeName.INT);
+        assertThat(TypeName.parse("object")).isSameAs(TypeName.OBJECT);
+        assertThat(TypeName.parse("System.Collections.Generic.Dictionary<string, int?[]>").toString())
+                .isEqualTo("System.Collections.Generic.Dictionary<string, int?[]>");
+        assertThat(TypeName.parse("global::System.Environment+SpecialFolder"))
+                .isEqualTo(ClassName.get("System", "Environment", "SpecialFolder"));
+        assertThat(TypeName.parse("Foo")).isEqualTo(ClassName.get("", "Foo"));
+        assertThat(TypeName.parse(" List < int > [ ] ").toString()).isEqualTo("List<int>[]");
+    }
+
+    @Test
+    public void parsedTypeNamesAreShared() {
+        ParameterizedTypeName ints = (ParameterizedTypeName) TypeName.parse("Foo.Bar.List<int>");
+        ParameterizedTypeName strings = (ParameterizedTypeName) TypeName.parse("Foo.Bar.List<string>");
+
+        assertThat(TypeName.parse("Foo.Bar.List<int>")).isSameAs(ints);
+        assertThat(strings.rawType).isSameAs(ints.rawType);
+    }
+
+    @Test
+    public void parseRejectsInvalidExpressions() {
+        for (String expression: new String[] {"", "List<", "int[,]", "a.b+c.d", "int?>", "1x"}) {
+            try {
+                TypeName.parse(expression);
+                fail(expression);
+            } catch (IllegalArgumentException expected) {
+                assertThat(expected.getMessage()).contains("'" + expression + "'");
+            }
+        }
+    }
+}
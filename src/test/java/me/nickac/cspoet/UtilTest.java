@@ -59,17 +59,42 @@ public class UtilTest {
   @Test public void stringLiteral() {
     stringLiteral("abc");
     stringLiteral("♦♥♠♣");
-    stringLiteral("€\\t@\\t$", "€\t@\t$", " ");
-    stringLiteral("abc();\\n\"\n  + \"def();", "abc();\ndef();", " ");
-    stringLiteral("This is \\\"quoted\\\"!", "This is \"quoted\"!", " ");
-    stringLiteral("e^{i\\\\pi}+1=0", "e^{i\\pi}+1=0", " ");
+    stringLiteral("€\\t@\\t$", "€\t@\t$");
+    stringLiteral("This is \\\"quoted\\\"!", "This is \"quoted\"!");
+    stringLiteral("\\u0000\\u0007\\u2028", "\u0000\u0007\u2028");
+    stringLiteral("abc();\\r\\ndef();", "abc();\r\ndef();");
+    stringLiteral("a\\n  \\nb", "a\n  \nb");
+  }
+
+  @Test public void verbatimStringLiteral() {
+    assertEquals("@\"e^{i\\pi}+1=0\"", Util.stringLiteralWithDoubleQuotes("e^{i\\pi}+1=0"));
+    assertEquals("@\"C:\\Temp\\a\"\"b\"", Util.stringLiteralWithDoubleQuotes("C:\\Temp\\a\"b"));
+    assertEquals("\"\\\\\\\"\"", Util.stringLiteralWithDoubleQuotes("\\\""));
+  }
+
+  @Test public void rawStringLiteral() {
+    assertEquals("\"\"\"\nabc();\ndef();\n\"\"\"", Util.stringLiteralWithDoubleQuotes("abc();\ndef();"));
+    assertEquals("\"\"\"\n{ \"a\": \"\\n\" }\n\n\"\"\"",
+        Util.stringLiteralWithDoubleQuotes("{ \"a\": \"\\n\" }\n"));
+    assertEquals("\"\"\"\"\"\n\"\"\"\"\n\n\"\"\"\"\"", Util.stringLiteralWithDoubleQuotes("\"\"\"\"\n"));
+  }
+
+  @Test public void rawStringLiteralTakesIndentation() {
+    CodeBlock block = CodeBlock.builder()
+        .addStatement("string sql = $S", "SELECT *\nFROM t")
+        .build();
+    assertEquals(""
+        + "string sql = \"\"\"\n"
+        + "\t\tSELECT *\n"
+        + "\t\tFROM t\n"
+        + "\t\t\"\"\";\n", block.toString());
   }
 
   void stringLiteral(String string) {
-    stringLiteral(string, string, " ");
+    stringLiteral(string, string);
   }
 
-  void stringLiteral(String expected, String value, String indent) {
-    assertEquals("\"" + expected + "\"", Util.stringLiteralWithDoubleQuotes(value, indent));
+  void stringLiteral(String expected, String value) {
+    assertEquals("\"" + expected + "\"", Util.stringLiteralWithDoubleQuotes(value));
   }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 NickAc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.nickac.cspoet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@RunWith(JUnit4.class)
+public final class ZipSinkTest {
+    @Test
+    public void writeAllInParallel() throws IOException {
+        List<CSharpFile> files = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            files.add(CSharpFile.builder("Generated.Types", TypeSpec.classBuilder("Type" + i).build())
+                    .build());
+        }
+        files.add(CSharpFile.builder("", TypeSpec.classBuilder("Root").build()).build());
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipSink sink = ZipSink.builder(archive).level(9).build()) {
+            sink.writeAll(files);
+        }
+
+        Map<String, String> entries = read(archive.toByteArray(), ZipEntry.DEFLATED);
+        assertThat(entries.size()).isEqualTo(101);
+        assertThat(entries.get("Generated/Types/Type42.cs")).isEqualTo(files.get(42).toString());
+        assertThat(entries.get("Root.cs")).isEqualTo("class Root {\n}\n");
+    }
+
+    @Test
+    public void storedEntries() throws IOException {
+        CSharpFile file = CSharpFile.builder("A.B", TypeSpec.classBuilder("C").build()).build();
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipSink sink = ZipSink.builder(archive).stored().build()) {
+            file.writeTo(sink);
+        }
+
+        Map<String, String> entries = read(archive.toByteArray(), ZipEntry.STORED);
+        assertThat(entries.keySet()).containsExactly("A/B/C.cs");
+        assertThat(entries.get("A/B/C.cs")).isEqualTo(file.toString());
+    }
+
+    private static Map<String, String> read(byte[] archive, int method) throws IOException {
+        Map<String, String> entries = new TreeMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry; (entry = in.getNextEntry()) != null; ) {
+                assertThat(entry.getMethod()).isEqualTo(method);
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                for (int count; (count = in.read(buffer)) != -1; ) {
+                    content.write(buffer, 0, count);
+                }
+                entries.put(entry.getName(), new String(content.toByteArray(), UTF_8));
+            }
+        }
+        return entries;
+    }
+}